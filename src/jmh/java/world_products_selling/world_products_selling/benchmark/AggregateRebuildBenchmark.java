@@ -0,0 +1,48 @@
+package world_products_selling.world_products_selling.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import world_products_selling.world_products_selling.analytics.ProductAggregate;
+import world_products_selling.world_products_selling.analytics.ProductCube;
+import world_products_selling.world_products_selling.analytics.ProductTimeSeries;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitAverage;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitQuantiles;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Построение всех агрегатов при старте, как в ProductAggregates, без чтения таблицы:
+// rows строк берутся по кругу из готового набора продуктов
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AggregateRebuildBenchmark {
+    private static final int DISTINCT_PRODUCTS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private List<Product> products;
+
+    @Setup
+    public void setUp() {
+        products = BenchmarkSupport.products(DISTINCT_PRODUCTS, 42);
+    }
+
+    @Benchmark
+    public List<ProductAggregate> rebuild() {
+        List<ProductAggregate> aggregates = List.of(new ProductCube(), new ProductTimeSeries(),
+                new ProfitPerUnitAverage(), new ProfitPerUnitQuantiles(0.01));
+        aggregates.forEach(ProductAggregate::reset);
+        for (int i = 0; i < rows; i++) {
+            Product product = products.get(i % DISTINCT_PRODUCTS);
+            for (ProductAggregate aggregate : aggregates) {
+                aggregate.apply(null, product);
+            }
+        }
+        return aggregates;
+    }
+}
@@ -0,0 +1,98 @@
+package world_products_selling.world_products_selling.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import world_products_selling.world_products_selling.WorldProductsSellingApplication;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Общие части бенчмарков: контекст приложения на H2 в памяти и синтетические данные.
+// Значения повторяют форму исходного CSV, генератор детерминирован.
+final class BenchmarkSupport {
+    static final String HEADER = "Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit";
+
+    private static final String[][] COUNTRIES = {
+            {"Europe", "Iceland"}, {"Europe", "Russia"}, {"Europe", "Moldova"}, {"Asia", "Japan"},
+            {"Asia", "China"}, {"Sub-Saharan Africa", "Namibia"}, {"Sub-Saharan Africa", "Kenya"},
+            {"North America", "Canada"}, {"Australia and Oceania", "Fiji"},
+            {"Middle East and North Africa", "Morocco"}, {"Central America and the Caribbean", "Haiti"}
+    };
+    private static final String[] ITEM_TYPES = {
+            "Baby Food", "Beverages", "Cereal", "Clothes", "Cosmetics", "Fruits",
+            "Household", "Meat", "Office Supplies", "Personal Care", "Snacks", "Vegetables"
+    };
+    private static final String[] CHANNELS = {"Online", "Offline"};
+    private static final String[] PRIORITIES = {"C", "H", "L", "M"};
+
+    private BenchmarkSupport() {
+    }
+
+    // Каждый контекст получает свою базу в памяти; загрузка встроенного CSV при старте остаётся.
+    // Настройки передаются аргументами, чтобы перекрыть application.properties
+    static ConfigurableApplicationContext start(String engine, String database) {
+        return new SpringApplicationBuilder(WorldProductsSellingApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=" + engine,
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.security=WARN");
+    }
+
+    static Path writeCsv(int rows) throws IOException {
+        Path file = Files.createTempFile("products-" + rows + "-", ".csv");
+        file.toFile().deleteOnExit();
+        Random random = new Random(rows);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            StringBuilder line = new StringBuilder(128);
+            for (int i = 0; i < rows; i++) {
+                String[] country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+                LocalDate date = LocalDate.ofEpochDay(14_600 + random.nextInt(2_900));
+                line.setLength(0);
+                line.append(country[0]).append(',').append(country[1]).append(',')
+                        .append(ITEM_TYPES[random.nextInt(ITEM_TYPES.length)]).append(',')
+                        .append(CHANNELS[random.nextInt(CHANNELS.length)]).append(',')
+                        .append(PRIORITIES[random.nextInt(PRIORITIES.length)]).append(',')
+                        .append(date.getMonthValue()).append('/').append(date.getDayOfMonth()).append('/')
+                        .append(date.getYear()).append(',')
+                        .append(1 + random.nextInt(10_000)).append(',')
+                        .append(random.nextInt(150_000_000) / 100.0);
+                writer.append(line);
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    static List<Product> products(int count, long seed) {
+        Random random = new Random(seed);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            Product product = new Product();
+            product.setRegion(country[0]);
+            product.setCountry(country[1]);
+            product.setItemType(ITEM_TYPES[random.nextInt(ITEM_TYPES.length)]);
+            product.setSalesChannel(CHANNELS[random.nextInt(CHANNELS.length)]);
+            product.setOrderPriority(PRIORITIES[random.nextInt(PRIORITIES.length)]);
+            product.setOrderDate(LocalDate.ofEpochDay(14_600 + random.nextInt(2_900)));
+            product.setUnitsSold(1 + random.nextInt(10_000));
+            product.setTotalProfit(random.nextInt(150_000_000) / 100.0);
+            products.add(product);
+        }
+        return products;
+    }
+}
@@ -0,0 +1,63 @@
+package world_products_selling.world_products_selling.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import world_products_selling.world_products_selling.ingest.CsvImportService;
+import world_products_selling.world_products_selling.ingest.ImportResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Полная загрузка синтетического CSV через CsvImportService в H2: разбор, вставка, контрольные точки.
+// Один замер - один импорт в пустую таблицу. 10M строк через JPA занимают десятки минут,
+// для быстрого прогона: -p rows=10000
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class CsvLoadBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"JpaEngine", "JdbcEngine"})
+    public String engine;
+
+    private ConfigurableApplicationContext context;
+    private CsvImportService importService;
+    private JdbcTemplate jdbcTemplate;
+    private Path file;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkSupport.writeCsv(rows);
+        context = BenchmarkSupport.start(engine, "csvload");
+        importService = context.getBean(CsvImportService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        jdbcTemplate.execute("DELETE FROM product");
+    }
+
+    @Benchmark
+    public ImportResult importCsv() throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importService.importCsv("benchmark-" + run++, reader);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+}
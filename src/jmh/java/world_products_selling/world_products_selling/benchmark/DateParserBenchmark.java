@@ -0,0 +1,55 @@
+package world_products_selling.world_products_selling.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import world_products_selling.world_products_selling.config.CsvDataLoader;
+import world_products_selling.world_products_selling.ingest.DateParser;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Разбор одной даты; format задаёт вид строк в выборке
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParserBenchmark {
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"M/d/yyyy", "dd.MM.yyyy", "yyyy-MM-dd"})
+    public String format;
+
+    private String[] dates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        dates = new String[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            LocalDate date = LocalDate.ofEpochDay(14_600 + random.nextInt(2_900));
+            dates[i] = switch (format) {
+                case "M/d/yyyy" -> date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear();
+                case "dd.MM.yyyy" -> String.format("%02d.%02d.%d", date.getDayOfMonth(), date.getMonthValue(), date.getYear());
+                default -> date.toString();
+            };
+        }
+    }
+
+    private String nextDate() {
+        next = (next + 1) & (SAMPLE_SIZE - 1);
+        return dates[next];
+    }
+
+    @Benchmark
+    public LocalDate parseDate() {
+        return CsvDataLoader.parseDate(nextDate());
+    }
+
+    @Benchmark
+    public int parseEpochDay() {
+        return DateParser.MONTH_FIRST.parseEpochDay(nextDate());
+    }
+}
@@ -0,0 +1,94 @@
+package world_products_selling.world_products_selling.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import world_products_selling.world_products_selling.dto.ProductPage;
+import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.repository.ProductStore;
+import world_products_selling.world_products_selling.service.ProductService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Операции ProductService на H2 в памяти с таблицей из 10 000 строк.
+// avg - поддерживаемое среднее, avgQuery - прежний запрос AVG по всей таблице.
+// Hibernate прогревается долго, поэтому прогрев длиннее, чем в остальных бенчмарках.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"JpaEngine", "JdbcEngine"})
+    public String engine;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private ProductStore productStore;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start(engine, "service");
+        productService = context.getBean(ProductService.class);
+        productStore = context.getBean(ProductStore.class);
+        productService.addAll(BenchmarkSupport.products(TABLE_SIZE - (int) productStore.count(), 1));
+        ids = productStore.findAll().stream().mapToInt(Product::getId).toArray();
+    }
+
+    private int randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public Product getOne() {
+        return productService.getOne(randomId());
+    }
+
+    @Benchmark
+    public ProductPage getPage() {
+        return productService.getPage(null, 100);
+    }
+
+    @Benchmark
+    public Product update() {
+        Product product = productService.getOne(randomId());
+        product.setTotalProfit(ThreadLocalRandom.current().nextInt(1_000_000) / 100.0);
+        return productService.update(product);
+    }
+
+    // Вставка и удаление в паре, чтобы размер таблицы не менялся между итерациями
+    @Benchmark
+    public Product addAndDelete() {
+        Product product = BenchmarkSupport.products(1, 3).get(0);
+        Product saved = productService.add(product);
+        productService.delete(saved.getId(), null);
+        return saved;
+    }
+
+    @Benchmark
+    public List<Product> addAllAndDelete() {
+        List<Product> saved = productService.addAll(BenchmarkSupport.products(100, 4));
+        saved.forEach(product -> productService.delete(product.getId(), null));
+        return saved;
+    }
+
+    @Benchmark
+    public double avg() {
+        return productService.findAverageProfitPerUnit();
+    }
+
+    @Benchmark
+    public Double avgQuery() {
+        return productStore.findAverageProfitPerUnit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
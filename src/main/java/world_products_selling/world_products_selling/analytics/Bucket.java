@@ -0,0 +1,48 @@
+package world_products_selling.world_products_selling.analytics;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+// Интервал временного ряда. Интервалы вложены: каждый, кроме DAY, делится на целые интервалы finer().
+// Дни представлены номерами от 1970-01-01, как в LocalDate.toEpochDay().
+public enum Bucket {
+    DAY, MONTH, QUARTER, YEAR;
+
+    // Первый день интервала, содержащего day
+    public long start(long day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        return switch (this) {
+            case DAY -> day;
+            case MONTH -> date.withDayOfMonth(1).toEpochDay();
+            case QUARTER -> date.with(IsoFields.DAY_OF_QUARTER, 1).toEpochDay();
+            case YEAR -> date.with(TemporalAdjusters.firstDayOfYear()).toEpochDay();
+        };
+    }
+
+    // Последний день интервала, начинающегося в start
+    public long end(long start) {
+        LocalDate date = LocalDate.ofEpochDay(start);
+        return switch (this) {
+            case DAY -> start;
+            case MONTH -> date.plusMonths(1).toEpochDay() - 1;
+            case QUARTER -> date.plusMonths(3).toEpochDay() - 1;
+            case YEAR -> date.plusYears(1).toEpochDay() - 1;
+        };
+    }
+
+    public Bucket finer() {
+        return this == DAY ? null : values()[ordinal() - 1];
+    }
+
+    // null, если такого интервала нет
+    public static Bucket fromName(String name) {
+        for (Bucket bucket : values()) {
+            if (bucket.name().toLowerCase(Locale.ROOT).equals(name)) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,59 @@
+package world_products_selling.world_products_selling.analytics;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+// Ячейка агрегата: число строк и суммы по ним.
+// Прибыль в данных - с точностью до цента, поэтому сумма хранится в центах в long:
+// сложение точное и без выделения памяти, а удаление не накапливает ошибку округления.
+// В double сумма переводится только при чтении.
+final class Cell {
+    private static final double CENTS = 100.0;
+
+    long count;
+    long unitsCount;
+    long unitsSum;
+    long profitCount;
+    long profitCents;
+
+    void add(Product product, int sign) {
+        count += sign;
+        if (product.getUnitsSold() != null) {
+            unitsCount += sign;
+            unitsSum += sign * (long) product.getUnitsSold();
+        }
+        if (product.getTotalProfit() != null && Double.isFinite(product.getTotalProfit())) {
+            profitCount += sign;
+            profitCents += sign * Math.round(product.getTotalProfit() * CENTS);
+        }
+    }
+
+    void add(Cell other) {
+        count += other.count;
+        unitsCount += other.unitsCount;
+        unitsSum += other.unitsSum;
+        profitCount += other.profitCount;
+        profitCents += other.profitCents;
+    }
+
+    Cell copy() {
+        Cell copy = new Cell();
+        copy.add(this);
+        return copy;
+    }
+
+    // Как в SQL: сумма и среднее по одним null-значениям - null
+    Object value(Metric metric) {
+        if (metric.function() == Metric.Function.COUNT) {
+            return count;
+        }
+        boolean units = metric.measure() == Metric.Measure.UNITS_SOLD;
+        long nonNull = units ? unitsCount : profitCount;
+        if (nonNull == 0) {
+            return null;
+        }
+        if (metric.function() == Metric.Function.SUM) {
+            return units ? (Object) unitsSum : profitCents / CENTS;
+        }
+        return units ? (double) unitsSum / nonNull : profitCents / CENTS / nonNull;
+    }
+}
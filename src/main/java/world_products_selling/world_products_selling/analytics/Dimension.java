@@ -0,0 +1,40 @@
+package world_products_selling.world_products_selling.analytics;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.function.Function;
+
+// Столбцы Product, по которым допускается группировка
+public enum Dimension {
+    REGION("region", Product::getRegion),
+    COUNTRY("country", Product::getCountry),
+    ITEM_TYPE("itemType", Product::getItemType),
+    SALES_CHANNEL("salesChannel", Product::getSalesChannel),
+    ORDER_PRIORITY("orderPriority", Product::getOrderPriority);
+
+    private final String field;
+    private final Function<Product, String> getter;
+
+    Dimension(String field, Function<Product, String> getter) {
+        this.field = field;
+        this.getter = getter;
+    }
+
+    public String field() {
+        return field;
+    }
+
+    public String valueOf(Product product) {
+        return getter.apply(product);
+    }
+
+    // null, если такого столбца нет
+    public static Dimension fromField(String field) {
+        for (Dimension dimension : values()) {
+            if (dimension.field.equals(field)) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package world_products_selling.world_products_selling.analytics;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Показатель запроса статистики: count, sum(поле) или avg(поле).
+// Поле - unitsSold или totalProfit; null-значения не учитываются, как в SQL.
+public record Metric(Function function, Measure measure) {
+    private static final Pattern CALL = Pattern.compile("(sum|avg)\\((\\w+)\\)");
+
+    public enum Function { COUNT, SUM, AVG }
+
+    public enum Measure {
+        UNITS_SOLD("unitsSold"),
+        TOTAL_PROFIT("totalProfit");
+
+        private final String field;
+
+        Measure(String field) {
+            this.field = field;
+        }
+
+        public String field() {
+            return field;
+        }
+    }
+
+    public static final Metric COUNT = new Metric(Function.COUNT, null);
+
+    // null, если выражение не распознано
+    public static Metric parse(String expression) {
+        String text = expression.trim();
+        if (text.equals("count")) {
+            return COUNT;
+        }
+        Matcher matcher = CALL.matcher(text);
+        if (!matcher.matches()) {
+            return null;
+        }
+        for (Measure measure : Measure.values()) {
+            if (measure.field.equals(matcher.group(2))) {
+                return new Metric(matcher.group(1).equals("sum") ? Function.SUM : Function.AVG, measure);
+            }
+        }
+        return null;
+    }
+
+    // Имя показателя в ответе, совпадает с выражением из запроса
+    public String label() {
+        return function == Function.COUNT ? "count" : function.name().toLowerCase(Locale.ROOT) + "(" + measure.field + ")";
+    }
+}
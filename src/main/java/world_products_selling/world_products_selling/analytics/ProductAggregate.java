@@ -0,0 +1,11 @@
+package world_products_selling.world_products_selling.analytics;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+// Агрегат по таблице product, поддерживаемый при каждом изменении записи.
+// apply должен менять состояние атомарно: читатель не видит удалённую, но ещё не добавленную запись.
+public interface ProductAggregate {
+    void reset();
+
+    void apply(Product removed, Product added);
+}
@@ -0,0 +1,51 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import world_products_selling.world_products_selling.repository.ProductStore;
+import world_products_selling.world_products_selling.service.ProductChangedEvent;
+
+import java.util.List;
+
+// Строит все агрегаты одним проходом по таблице до запуска веб-сервера
+// и затем применяет к ним изменения после фиксации транзакции
+@Component
+public class ProductAggregates implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(ProductAggregates.class);
+
+    private final ProductStore productRepository;
+    private final List<ProductAggregate> aggregates;
+
+    public ProductAggregates(ProductStore productRepository, List<ProductAggregate> aggregates) {
+        this.productRepository = productRepository;
+        this.aggregates = aggregates;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        aggregates.forEach(ProductAggregate::reset);
+        long[] rows = new long[1];
+        productRepository.streamAll(product -> {
+            for (ProductAggregate aggregate : aggregates) {
+                aggregate.apply(null, product);
+            }
+            rows[0]++;
+        });
+        log.info("Агрегаты построены по {} продуктам за {} мс", rows[0], (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Раньше ProductVersions, чтобы новая версия появлялась уже после обновления агрегатов
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        for (ProductAggregate aggregate : aggregates) {
+            aggregate.apply(event.before(), event.after());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Куб по пяти измерениям Product: для каждого из 2^5 наборов измерений хранятся
+// готовые ячейки group -> (count, суммы). Изменение записи обновляет по одной ячейке
+// в каждом наборе, запрос читает ровно те ячейки, которые попадут в ответ.
+@Component
+public class ProductCube implements ProductAggregate {
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+    private static final Comparator<String> VALUE_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Ranked> RANKING = Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparing(Ranked::group, VALUE_ORDER);
+
+    // Индекс - битовая маска измерений, ключ ячейки - значения этих измерений по порядку
+    @SuppressWarnings("unchecked")
+    private final Map<List<String>, Cell>[] cuboids = new Map[1 << DIMENSIONS.length];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductCube() {
+        for (int mask = 0; mask < cuboids.length; mask++) {
+            cuboids[mask] = new HashMap<>();
+        }
+    }
+
+    @Override
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            for (Map<List<String>, Cell> cuboid : cuboids) {
+                cuboid.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(Product removed, Product added) {
+        lock.writeLock().lock();
+        try {
+            if (removed != null) {
+                update(removed, -1);
+            }
+            if (added != null) {
+                update(added, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void update(Product product, int sign) {
+        String[] values = new String[DIMENSIONS.length];
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            values[i] = DIMENSIONS[i].valueOf(product);
+        }
+        for (int mask = 0; mask < cuboids.length; mask++) {
+            List<String> key = key(values, mask);
+            Cell cell = cuboids[mask].computeIfAbsent(key, k -> new Cell());
+            cell.add(product, sign);
+            if (cell.count == 0) {
+                cuboids[mask].remove(key);
+            }
+        }
+    }
+
+    // Число строк с данным значением измерения
+    public long count(Dimension dimension, String value) {
+        lock.readLock().lock();
+        try {
+            Cell cell = cuboids[1 << dimension.ordinal()].get(Collections.singletonList(value));
+            return cell != null ? cell.count : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        lock.readLock().lock();
+        try {
+            Cell cell = cuboids[0].get(List.of());
+            return cell != null ? cell.count : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Число различных значений counted (null не считается) - по всей таблице или в каждой группе groupBy.
+    // Ответ точный: ячейки набора {counted, groupBy} уже есть в кубе, и каждая из них - одна пара значений.
+    // Строки упорядочены по значению groupBy, null - первым
+    public List<Map<String, Object>> distinct(Dimension counted, Dimension groupBy) {
+        String label = "distinct(" + counted.field() + ")";
+        Map<String, Long> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (groupBy == null) {
+                long distinct = cuboids[1 << counted.ordinal()].keySet().stream()
+                        .filter(key -> key.get(0) != null)
+                        .count();
+                return List.of(Map.of(label, distinct));
+            }
+            int mask = (1 << counted.ordinal()) | (1 << groupBy.ordinal());
+            int countedAt = groupBy.ordinal() < counted.ordinal() ? 1 : 0;
+            int groupAt = Integer.bitCount(mask) - 1 - countedAt;
+            for (List<String> key : cuboids[mask].keySet()) {
+                counts.merge(key.get(groupAt), key.get(countedAt) != null ? 1L : 0L, Long::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<String> groups = new ArrayList<>(counts.keySet());
+        groups.sort(VALUE_ORDER);
+        List<Map<String, Object>> rows = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(groupBy.field(), group);
+            row.put(label, counts.get(group));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // k значений измерения с наибольшим metric, по убыванию; при равенстве - по значению измерения.
+    // Ячейки измерения уже хранят текущие суммы, поэтому куча размера k проходит по значениям
+    // измерения (десятки-сотни), а не по строкам таблицы. Группы без значения metric идут последними
+    public List<Map<String, Object>> top(Dimension dimension, Metric metric, int k) {
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(k + 1, RANKING.reversed());
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<List<String>, Cell> entry : cuboids[1 << dimension.ordinal()].entrySet()) {
+                heap.add(new Ranked(entry.getKey().get(0), entry.getValue().value(metric)));
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(RANKING);
+        List<Map<String, Object>> rows = new ArrayList<>(ranked.size());
+        for (Ranked entry : ranked) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(dimension.field(), entry.group());
+            row.put(metric.label(), entry.value());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // Строки ответа упорядочены по значениям измерений, null - первыми
+    public List<Map<String, Object>> query(List<Dimension> groupBy, List<Metric> metrics) {
+        int mask = 0;
+        for (Dimension dimension : groupBy) {
+            mask |= 1 << dimension.ordinal();
+        }
+        List<Dimension> keyDimensions = Arrays.stream(DIMENSIONS).filter(groupBy::contains).toList();
+
+        List<Map.Entry<List<String>, Cell>> cells;
+        lock.readLock().lock();
+        try {
+            cells = new ArrayList<>(cuboids[mask].size());
+            for (Map.Entry<List<String>, Cell> entry : cuboids[mask].entrySet()) {
+                cells.add(Map.entry(entry.getKey(), entry.getValue().copy()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        cells.sort((a, b) -> compareKeys(a.getKey(), b.getKey()));
+        List<Map<String, Object>> rows = new ArrayList<>(cells.size());
+        for (Map.Entry<List<String>, Cell> entry : cells) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (Dimension dimension : groupBy) {
+                row.put(dimension.field(), entry.getKey().get(keyDimensions.indexOf(dimension)));
+            }
+            for (Metric metric : metrics) {
+                row.put(metric.label(), entry.getValue().value(metric));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private record Ranked(String group, Object value) {
+        double score() {
+            return value != null ? ((Number) value).doubleValue() : Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static List<String> key(String[] values, int mask) {
+        String[] key = new String[Integer.bitCount(mask)];
+        int next = 0;
+        for (int i = 0; i < values.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                key[next++] = values[i];
+            }
+        }
+        return Arrays.asList(key);
+    }
+
+    private static int compareKeys(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int result = VALUE_ORDER.compare(a.get(i), b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
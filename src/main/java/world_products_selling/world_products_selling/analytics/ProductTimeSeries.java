@@ -0,0 +1,163 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Временной ряд по orderDate: для каждого вида интервала хранятся готовые ячейки
+// по всей таблице и по каждому значению каждого измерения, упорядоченные по началу интервала.
+// Запрос читает ячейки интервалов из диапазона; неполные крайние интервалы
+// собираются из более мелких, так что чтение не зависит от числа строк.
+// Строки без orderDate в ряд не попадают.
+@Component
+public class ProductTimeSeries implements ProductAggregate {
+    private static final Bucket[] BUCKETS = Bucket.values();
+    private static final Comparator<String> VALUE_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    // Ряд всей таблицы (dimension == null) или одного значения измерения
+    private record Series(Dimension dimension, String value) {
+    }
+
+    private record Point(String value, long start, Cell cell) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private final Map<Series, NavigableMap<Long, Cell>>[] levels = new Map[BUCKETS.length];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductTimeSeries() {
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = new HashMap<>();
+        }
+    }
+
+    @Override
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            for (Map<Series, NavigableMap<Long, Cell>> level : levels) {
+                level.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void apply(Product removed, Product added) {
+        lock.writeLock().lock();
+        try {
+            if (removed != null && removed.getOrderDate() != null) {
+                update(removed, -1);
+            }
+            if (added != null && added.getOrderDate() != null) {
+                update(added, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void update(Product product, int sign) {
+        long day = product.getOrderDate().toEpochDay();
+        List<Series> series = new ArrayList<>(Dimension.values().length + 1);
+        series.add(new Series(null, null));
+        for (Dimension dimension : Dimension.values()) {
+            series.add(new Series(dimension, dimension.valueOf(product)));
+        }
+        for (Bucket bucket : BUCKETS) {
+            Long start = bucket.start(day);
+            for (Series key : series) {
+                NavigableMap<Long, Cell> cells = levels[bucket.ordinal()].computeIfAbsent(key, k -> new TreeMap<>());
+                Cell cell = cells.computeIfAbsent(start, k -> new Cell());
+                cell.add(product, sign);
+                if (cell.count == 0) {
+                    cells.remove(start);
+                    if (cells.isEmpty()) {
+                        levels[bucket.ordinal()].remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // Строка ответа - один непустой интервал: bucket - его первый день, затем значение groupBy и показатели.
+    // Крайние интервалы учитывают только дни внутри [from, to]; null - граница не задана.
+    // Строки упорядочены по значению groupBy (null - первыми), затем по времени.
+    public List<Map<String, Object>> query(Bucket bucket, LocalDate from, LocalDate to,
+                                           Dimension groupBy, List<Metric> metrics) {
+        long first = from != null ? from.toEpochDay() : Long.MIN_VALUE;
+        long last = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+
+        List<Point> points = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Series> series = new ArrayList<>();
+            for (Series key : levels[bucket.ordinal()].keySet()) {
+                if (key.dimension() == groupBy) {
+                    series.add(key);
+                }
+            }
+            series.sort(Comparator.comparing(Series::value, VALUE_ORDER));
+            long firstStart = first == Long.MIN_VALUE ? first : bucket.start(first);
+            for (Series key : series) {
+                NavigableMap<Long, Cell> cells = levels[bucket.ordinal()].get(key);
+                for (Map.Entry<Long, Cell> entry : cells.subMap(firstStart, true, last, true).entrySet()) {
+                    long start = entry.getKey();
+                    Cell cell = start >= first && bucket.end(start) <= last
+                            ? entry.getValue().copy()
+                            : sum(bucket.finer(), key, Math.max(start, first), Math.min(bucket.end(start), last));
+                    if (cell.count > 0) {
+                        points.add(new Point(key.value(), start, cell));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(points.size());
+        for (Point point : points) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("bucket", LocalDate.ofEpochDay(point.start()));
+            if (groupBy != null) {
+                row.put(groupBy.field(), point.value());
+            }
+            for (Metric metric : metrics) {
+                row.put(metric.label(), point.cell().value(metric));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // Сумма ячеек ряда за дни [first, last]: целые интервалы уровня bucket берутся готовыми,
+    // неполные - рекурсивно с более мелкого уровня. Вызывается под блокировкой чтения.
+    private Cell sum(Bucket bucket, Series key, long first, long last) {
+        Cell total = new Cell();
+        NavigableMap<Long, Cell> cells = levels[bucket.ordinal()].get(key);
+        if (cells == null) {
+            return total;
+        }
+        for (Map.Entry<Long, Cell> entry : cells.subMap(bucket.start(first), true, last, true).entrySet()) {
+            long start = entry.getKey();
+            if (start >= first && bucket.end(start) <= last) {
+                total.add(entry.getValue());
+            } else {
+                total.add(sum(bucket.finer(), key, Math.max(start, first), Math.min(bucket.end(start), last)));
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,66 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.entity.Product;
+
+// Среднее totalProfit / unitsSold по всем записям, как AVG в SQL.
+// Записи без прибыли или без проданных единиц не учитываются.
+// Отношения не кратны центу, поэтому сумма хранится в double с компенсацией (алгоритм Ноймайера):
+// потерянные при сложении младшие разряды копятся в compensation, и вычитание при удалении
+// возвращает сумму к прежнему значению без накопления ошибки и без выделения памяти на строку.
+@Component
+public class ProfitPerUnitAverage implements ProductAggregate {
+    private double sum;
+    private double compensation;
+    private long count;
+
+    @Override
+    public synchronized void reset() {
+        sum = 0;
+        compensation = 0;
+        count = 0;
+    }
+
+    @Override
+    public synchronized void apply(Product removed, Product added) {
+        if (removed != null && counts(removed)) {
+            add(-ratio(removed));
+            count--;
+        }
+        if (added != null && counts(added)) {
+            add(ratio(added));
+            count++;
+        }
+        if (count == 0) {
+            sum = 0;
+            compensation = 0;
+        }
+    }
+
+    private void add(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+
+    public synchronized double average() {
+        return count > 0 ? (sum + compensation) / count : 0.0;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    static boolean counts(Product product) {
+        return product.getTotalProfit() != null && Double.isFinite(product.getTotalProfit())
+                && product.getUnitsSold() != null && product.getUnitsSold() != 0;
+    }
+
+    private static double ratio(Product product) {
+        return product.getTotalProfit() / product.getUnitsSold();
+    }
+}
@@ -0,0 +1,54 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Квантили totalProfit / unitsSold по тем же записям, что и ProfitPerUnitAverage.
+// Точная сортировка потребовала бы полного прохода по таблице; скетч занимает несколько КБ,
+// обновляется при каждом изменении записи и отвечает с относительной ошибкой не больше
+// app.analytics.profit-per-unit.relative-accuracy.
+@Component
+public class ProfitPerUnitQuantiles implements ProductAggregate {
+    private final QuantileSketch sketch;
+
+    public ProfitPerUnitQuantiles(
+            @Value("${app.analytics.profit-per-unit.relative-accuracy:0.01}") double relativeAccuracy) {
+        this.sketch = new QuantileSketch(relativeAccuracy);
+    }
+
+    @Override
+    public synchronized void reset() {
+        sketch.clear();
+    }
+
+    @Override
+    public synchronized void apply(Product removed, Product added) {
+        if (removed != null && ProfitPerUnitAverage.counts(removed)) {
+            sketch.add(removed.getTotalProfit() / removed.getUnitsSold(), -1);
+        }
+        if (added != null && ProfitPerUnitAverage.counts(added)) {
+            sketch.add(added.getTotalProfit() / added.getUnitsSold(), 1);
+        }
+    }
+
+    // percentiles - от 0 до 100; ключи ответа вида p50, p99.9. Для пустой таблицы значения - null
+    public synchronized Map<String, Object> percentiles(List<Double> percentiles) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", sketch.count());
+        result.put("relativeAccuracy", sketch.relativeAccuracy());
+        for (double percentile : percentiles) {
+            double value = sketch.quantile(percentile / 100);
+            result.put(label(percentile), Double.isNaN(value) ? null : value);
+        }
+        return result;
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (long) percentile : "p" + percentile;
+    }
+}
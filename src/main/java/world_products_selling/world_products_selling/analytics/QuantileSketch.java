@@ -0,0 +1,116 @@
+package world_products_selling.world_products_selling.analytics;
+
+import java.util.Arrays;
+
+// Квантильный скетч с логарифмическими корзинами (как DDSketch): значение x > 0 попадает
+// в корзину ceil(log_gamma(x)), gamma = (1 + a) / (1 - a), и любой квантиль возвращается
+// с относительной ошибкой не больше a. Счётчики корзин можно уменьшать, так что удаление
+// значения возвращает скетч ровно в прежнее состояние.
+// Отрицательные значения хранятся отдельно по модулю, значения меньше MIN_VALUE по модулю считаются нулём.
+// Для значений от 0.01 до 10^4 при a = 0.01 это около 700 корзин, меньше 6 КБ.
+final class QuantileSketch {
+    static final double MIN_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+
+    QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Относительная точность должна быть в интервале (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    long count() {
+        return count;
+    }
+
+    // sign: 1 - добавить значение, -1 - удалить ранее добавленное
+    void add(double value, int sign) {
+        if (value >= MIN_VALUE) {
+            positive.add(index(value), sign);
+        } else if (value <= -MIN_VALUE) {
+            negative.add(index(-value), sign);
+        } else {
+            zeroCount += sign;
+        }
+        count += sign;
+    }
+
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    // q от 0 до 1; NaN для пустого скетча
+    double quantile(double q) {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        double rank = q * (count - 1);
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -value(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return value(positive.offset + i);
+            }
+        }
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Середина корзины (gamma^(i-1), gamma^i] в смысле относительной ошибки
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    // Счётчики подряд идущих корзин начиная с offset; массив расширяется в нужную сторону
+    private static final class Buckets {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index, int sign) {
+            if (counts.length == 0) {
+                counts = new long[1];
+                offset = index;
+            } else if (index < offset) {
+                long[] grown = new long[counts.length + offset - index];
+                System.arraycopy(counts, 0, grown, offset - index, counts.length);
+                counts = grown;
+                offset = index;
+            } else if (index >= offset + counts.length) {
+                counts = Arrays.copyOf(counts, index - offset + 1);
+            }
+            counts[index - offset] += sign;
+        }
+
+        void clear() {
+            counts = new long[0];
+            offset = 0;
+        }
+    }
+}
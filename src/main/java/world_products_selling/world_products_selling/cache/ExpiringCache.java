@@ -0,0 +1,143 @@
+package world_products_selling.world_products_selling.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+// Ограниченный LRU-кэш, записи которого живут не дольше ttl с момента добавления.
+// Размер - сумма весов записей; по умолчанию вес каждой записи 1, то есть размер - число записей.
+// Запись тяжелее всего кэша не сохраняется.
+// Вытеснением считаются удаления по размеру и по истечении ttl, но не remove и clear.
+// ReentrantLock, а не synchronized: на Java 21 ожидание монитора занимает поток-носитель виртуального потока,
+// а кэш аутентификации читается на каждом запросе.
+public class ExpiringCache<K, V> {
+    private final long ttlNanos;
+    private final long maxSize;
+    private final ToIntFunction<? super V> weigher;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ExpiringCache(Duration ttl, int maxSize) {
+        this(ttl, maxSize, value -> 1, System::nanoTime);
+    }
+
+    public ExpiringCache(Duration ttl, long maxSize, ToIntFunction<? super V> weigher) {
+        this(ttl, maxSize, weigher, System::nanoTime);
+    }
+
+    ExpiringCache(Duration ttl, int maxSize, LongSupplier nanoTime) {
+        this(ttl, maxSize, value -> 1, nanoTime);
+    }
+
+    ExpiringCache(Duration ttl, long maxSize, ToIntFunction<? super V> weigher, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.weigher = weigher;
+        this.nanoTime = nanoTime;
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            if (nanoTime.getAsLong() - entry.created >= ttlNanos) {
+                removeEntry(key);
+                evictions++;
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // При maxSize 0 кэш ничего не хранит
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            int entryWeight = weigher.applyAsInt(value);
+            removeEntry(key);
+            if (entryWeight > maxSize) {
+                return;
+            }
+            entries.put(key, new Entry<>(value, nanoTime.getAsLong(), entryWeight));
+            weight += entryWeight;
+            Iterator<Entry<V>> eldest = entries.values().iterator();
+            while (weight > maxSize) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        lock.lock();
+        try {
+            removeEntry(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits, misses, evictions, entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeEntry(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Entry<V>(V value, long created, int weight) {
+    }
+}
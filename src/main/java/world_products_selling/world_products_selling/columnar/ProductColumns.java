@@ -0,0 +1,366 @@
+package world_products_selling.world_products_selling.columnar;
+
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// Таблица продуктов, разложенная по столбцам примитивных массивов.
+// Строки упорядочены по возрастанию id, поэтому поиск по id - двоичный.
+// Удалённые строки помечаются в deleted и вычищаются compact().
+// Отсутствующие значения: NULL_INT для int-столбцов, NaN для totalProfit,
+// StringDictionary.NULL_CODE для строковых. Не потокобезопасна.
+public class ProductColumns {
+    public static final int NULL_INT = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StringDictionary regions = new StringDictionary();
+    private final StringDictionary countries = new StringDictionary();
+    private final StringDictionary itemTypes = new StringDictionary();
+    private final StringDictionary salesChannels = new StringDictionary();
+    private final StringDictionary orderPriorities = new StringDictionary();
+
+    private int[] id = new int[INITIAL_CAPACITY];
+    private int[] region = new int[INITIAL_CAPACITY];
+    private int[] country = new int[INITIAL_CAPACITY];
+    private int[] itemType = new int[INITIAL_CAPACITY];
+    private int[] salesChannel = new int[INITIAL_CAPACITY];
+    private int[] orderPriority = new int[INITIAL_CAPACITY];
+    private int[] orderDate = new int[INITIAL_CAPACITY];
+    private int[] unitsSold = new int[INITIAL_CAPACITY];
+    private double[] totalProfit = new double[INITIAL_CAPACITY];
+    private int[] version = new int[INITIAL_CAPACITY];
+    private final BitSet deleted = new BitSet();
+
+    private int size;
+    private int deletedCount;
+
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return size - deletedCount;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public boolean isDeleted(int row) {
+        return deleted.get(row);
+    }
+
+    public int lastId() {
+        return size == 0 ? 0 : id[size - 1];
+    }
+
+    public int id(int row) {
+        return id[row];
+    }
+
+    public int unitsSold(int row) {
+        return unitsSold[row];
+    }
+
+    public double totalProfit(int row) {
+        return totalProfit[row];
+    }
+
+    public int orderDate(int row) {
+        return orderDate[row];
+    }
+
+    public int version(int row) {
+        return version[row];
+    }
+
+    // id новой строки должен быть больше всех имеющихся
+    public int append(int newId, String region, String country, String itemType, String salesChannel,
+                      String orderPriority, int orderDate, int unitsSold, double totalProfit) {
+        if (newId <= lastId()) {
+            throw new IllegalArgumentException("id " + newId + " не больше последнего " + lastId());
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        id[row] = newId;
+        version[row] = 0;
+        set(row, region, country, itemType, salesChannel, orderPriority, orderDate, unitsSold, totalProfit);
+        return row;
+    }
+
+    public int append(int newId, Product product) {
+        return append(newId, product.getRegion(), product.getCountry(), product.getItemType(),
+                product.getSalesChannel(), product.getOrderPriority(), epochDay(product.getOrderDate()),
+                product.getUnitsSold() != null ? product.getUnitsSold() : NULL_INT,
+                product.getTotalProfit() != null ? product.getTotalProfit() : Double.NaN);
+    }
+
+    // Замена значений строки увеличивает её версию
+    public void set(int row, Product product) {
+        version[row]++;
+        set(row, product.getRegion(), product.getCountry(), product.getItemType(),
+                product.getSalesChannel(), product.getOrderPriority(), epochDay(product.getOrderDate()),
+                product.getUnitsSold() != null ? product.getUnitsSold() : NULL_INT,
+                product.getTotalProfit() != null ? product.getTotalProfit() : Double.NaN);
+    }
+
+    private void set(int row, String region, String country, String itemType, String salesChannel,
+                     String orderPriority, int orderDate, int unitsSold, double totalProfit) {
+        this.region[row] = regions.encode(region);
+        this.country[row] = countries.encode(country);
+        this.itemType[row] = itemTypes.encode(itemType);
+        this.salesChannel[row] = salesChannels.encode(salesChannel);
+        this.orderPriority[row] = orderPriorities.encode(orderPriority);
+        this.orderDate[row] = orderDate;
+        this.unitsSold[row] = unitsSold;
+        this.totalProfit[row] = totalProfit;
+    }
+
+    public void delete(int row) {
+        if (!deleted.get(row)) {
+            deleted.set(row);
+            deletedCount++;
+        }
+    }
+
+    public Product toProduct(int row) {
+        Product product = new Product();
+        product.setId(id[row]);
+        product.setRegion(regions.decode(region[row]));
+        product.setCountry(countries.decode(country[row]));
+        product.setItemType(itemTypes.decode(itemType[row]));
+        product.setSalesChannel(salesChannels.decode(salesChannel[row]));
+        product.setOrderPriority(orderPriorities.decode(orderPriority[row]));
+        product.setOrderDate(orderDate[row] != NULL_INT ? LocalDate.ofEpochDay(orderDate[row]) : null);
+        product.setUnitsSold(unitsSold[row] != NULL_INT ? unitsSold[row] : null);
+        product.setTotalProfit(!Double.isNaN(totalProfit[row]) ? totalProfit[row] : null);
+        product.setVersion(version[row]);
+        return product;
+    }
+
+    // Проверка строки по условиям filter в порядке order. Строковые значения переводятся в коды
+    // один раз, дальше сравниваются целые числа; значения, которого нет в словаре, не подходит ни одна строка.
+    // Пропущенные значения не подходят ни под одно условие, как NULL в SQL.
+    // Проверка действительна, пока таблица не изменяется: коды и массивы захватываются при построении.
+    public IntPredicate matcher(ProductFilter filter, List<ProductFilter.Criterion> order) {
+        IntPredicate matcher = row -> true;
+        for (ProductFilter.Criterion criterion : order) {
+            IntPredicate next = switch (criterion) {
+                case REGION -> equalTo(region, regions, filter.region());
+                case COUNTRY -> equalTo(country, countries, filter.country());
+                case ITEM_TYPE -> equalTo(itemType, itemTypes, filter.itemType());
+                case SALES_CHANNEL -> equalTo(salesChannel, salesChannels, filter.salesChannel());
+                case ORDER_PRIORITY -> equalTo(orderPriority, orderPriorities, filter.orderPriority());
+                case FROM -> {
+                    int from = (int) filter.from().toEpochDay();
+                    int[] dates = orderDate;
+                    yield row -> dates[row] != NULL_INT && dates[row] >= from;
+                }
+                case TO -> {
+                    int to = (int) filter.to().toEpochDay();
+                    int[] dates = orderDate;
+                    yield row -> dates[row] != NULL_INT && dates[row] <= to;
+                }
+                case MIN_PROFIT -> {
+                    double minProfit = filter.minProfit();
+                    double[] profits = totalProfit;
+                    yield row -> profits[row] >= minProfit;
+                }
+            };
+            matcher = matcher.and(next);
+        }
+        return matcher;
+    }
+
+    private static IntPredicate equalTo(int[] column, StringDictionary dictionary, String value) {
+        int code = dictionary.lookup(value);
+        if (code == StringDictionary.NULL_CODE) {
+            return row -> false;
+        }
+        return row -> column[row] == code;
+    }
+
+    // Номер живой строки с данным id или -1
+    public int findRow(int productId) {
+        int row = Arrays.binarySearch(id, 0, size, productId);
+        return row >= 0 && !deleted.get(row) ? row : -1;
+    }
+
+    // Номер первой строки (возможно, удалённой) с id больше данного
+    public int firstRowAfter(int productId) {
+        int row = Arrays.binarySearch(id, 0, size, productId);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    // Сдвигает живые строки к началу, освобождая место удалённых
+    public void compact() {
+        if (deletedCount == 0) {
+            return;
+        }
+        int target = 0;
+        for (int row = 0; row < size; row++) {
+            if (deleted.get(row)) {
+                continue;
+            }
+            if (target != row) {
+                id[target] = id[row];
+                region[target] = region[row];
+                country[target] = country[row];
+                itemType[target] = itemType[row];
+                salesChannel[target] = salesChannel[row];
+                orderPriority[target] = orderPriority[row];
+                orderDate[target] = orderDate[row];
+                unitsSold[target] = unitsSold[row];
+                totalProfit[target] = totalProfit[row];
+                version[target] = version[row];
+            }
+            target++;
+        }
+        size = target;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= id.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, id.length + (id.length >> 1));
+        id = Arrays.copyOf(id, newCapacity);
+        region = Arrays.copyOf(region, newCapacity);
+        country = Arrays.copyOf(country, newCapacity);
+        itemType = Arrays.copyOf(itemType, newCapacity);
+        salesChannel = Arrays.copyOf(salesChannel, newCapacity);
+        orderPriority = Arrays.copyOf(orderPriority, newCapacity);
+        orderDate = Arrays.copyOf(orderDate, newCapacity);
+        unitsSold = Arrays.copyOf(unitsSold, newCapacity);
+        totalProfit = Arrays.copyOf(totalProfit, newCapacity);
+        version = Arrays.copyOf(version, newCapacity);
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NULL_INT;
+    }
+
+    // Размер живых строк в снимке (write): словари, затем столбцы целиком один за другим.
+    // Коды строковых столбцов занимают 1, 2 или 4 байта в зависимости от размера словаря,
+    // даты - номер дня в int, числа - как в памяти
+    long snapshotSize() {
+        long rows = liveCount();
+        long bytes = Integer.BYTES;
+        for (StringDictionary dictionary : dictionaries()) {
+            bytes += dictionary.snapshotSize() + rows * codeWidth(dictionary);
+        }
+        return bytes + rows * (4L * Integer.BYTES + Double.BYTES);
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(liveCount());
+        StringDictionary[] dictionaries = dictionaries();
+        int[][] codes = {region, country, itemType, salesChannel, orderPriority};
+        for (StringDictionary dictionary : dictionaries) {
+            dictionary.write(out);
+        }
+        for (int i = 0; i < codes.length; i++) {
+            putCodes(out, codes[i], codeWidth(dictionaries[i]));
+        }
+        putInts(out, id);
+        putInts(out, orderDate);
+        putInts(out, unitsSold);
+        putInts(out, version);
+        if (deletedCount == 0) {
+            out.asDoubleBuffer().put(totalProfit, 0, size);
+            out.position(out.position() + size * Double.BYTES);
+        } else {
+            for (int row = 0; row < size; row++) {
+                if (!deleted.get(row)) {
+                    out.putDouble(totalProfit[row]);
+                }
+            }
+        }
+    }
+
+    // Заполняет пустую таблицу из снимка: числовые столбцы копируются из буфера целиком,
+    // объекты строк не создаются
+    void read(ByteBuffer in) {
+        if (size != 0) {
+            throw new IllegalStateException("Снимок читается только в пустую таблицу");
+        }
+        int rows = in.getInt();
+        StringDictionary[] dictionaries = dictionaries();
+        for (StringDictionary dictionary : dictionaries) {
+            dictionary.read(in);
+        }
+        ensureCapacity(rows);
+        int[][] codes = {region, country, itemType, salesChannel, orderPriority};
+        for (int i = 0; i < codes.length; i++) {
+            getCodes(in, codes[i], rows, codeWidth(dictionaries[i]));
+        }
+        getInts(in, id, rows);
+        getInts(in, orderDate, rows);
+        getInts(in, unitsSold, rows);
+        getInts(in, version, rows);
+        in.asDoubleBuffer().get(totalProfit, 0, rows);
+        in.position(in.position() + rows * Double.BYTES);
+        size = rows;
+    }
+
+    private StringDictionary[] dictionaries() {
+        return new StringDictionary[]{regions, countries, itemTypes, salesChannels, orderPriorities};
+    }
+
+    // Код хранится со сдвигом на 1, чтобы NULL_CODE стал нулём
+    private static int codeWidth(StringDictionary dictionary) {
+        int max = dictionary.size() + 1;
+        return max <= 0xff ? 1 : max <= 0xffff ? 2 : 4;
+    }
+
+    private void putCodes(ByteBuffer out, int[] column, int width) {
+        for (int row = 0; row < size; row++) {
+            if (deleted.get(row)) {
+                continue;
+            }
+            int code = column[row] + 1;
+            switch (width) {
+                case 1 -> out.put((byte) code);
+                case 2 -> out.putShort((short) code);
+                default -> out.putInt(code);
+            }
+        }
+    }
+
+    private static void getCodes(ByteBuffer in, int[] column, int rows, int width) {
+        for (int row = 0; row < rows; row++) {
+            int code = switch (width) {
+                case 1 -> Byte.toUnsignedInt(in.get());
+                case 2 -> Short.toUnsignedInt(in.getShort());
+                default -> in.getInt();
+            };
+            column[row] = code - 1;
+        }
+    }
+
+    private void putInts(ByteBuffer out, int[] column) {
+        if (deletedCount == 0) {
+            out.asIntBuffer().put(column, 0, size);
+            out.position(out.position() + size * Integer.BYTES);
+            return;
+        }
+        for (int row = 0; row < size; row++) {
+            if (!deleted.get(row)) {
+                out.putInt(column[row]);
+            }
+        }
+    }
+
+    private static void getInts(ByteBuffer in, int[] column, int rows) {
+        in.asIntBuffer().get(column, 0, rows);
+        in.position(in.position() + rows * Integer.BYTES);
+    }
+}
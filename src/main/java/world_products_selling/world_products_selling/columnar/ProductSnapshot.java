@@ -0,0 +1,146 @@
+package world_products_selling.world_products_selling.columnar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Двоичный снимок ProductColumns: при старте файл отображается в память и столбцы копируются
+// из него целиком, без разбора CSV и объектов строк.
+// Формат (little-endian): заголовок - "PRODSNAP", FORMAT_VERSION, Source - CSV, из которого получены данные,
+// последний выданный id; затем ProductColumns.write; в конце CRC32C всего предыдущего.
+// Снимок с другой версией формата, от другого CSV или с неверной CRC не читается.
+public final class ProductSnapshot {
+    static final long MAGIC = 0x50414e53444f5250L; // "PRODSNAP" в little-endian
+    static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + 3 * Long.BYTES + Integer.BYTES;
+    private static final int TRAILER_SIZE = Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Размер или отметка источника, которые не удалось получить
+    public static final long UNKNOWN = -1;
+
+    // Источник данных: размер и отметка, которую можно получить без чтения содержимого
+    // (CRC записи в jar или время изменения файла), и CRC32C содержимого.
+    // Если размер или отметка неизвестны (UNKNOWN), снимок сверяется только по контрольной сумме
+    public record Source(long size, long stamp, long checksum) {
+    }
+
+    // Содержимое источника читается, только если его размер и отметка не совпали со снимком
+    @FunctionalInterface
+    public interface Checksum {
+        long compute() throws IOException;
+    }
+
+    private ProductSnapshot() {
+    }
+
+    // CRC32C содержимого источника; поток читается до конца, но не закрывается
+    public static long checksum(InputStream in) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    // Записывает снимок во временный файл рядом, сбрасывает его на диск и переименовывает в file,
+    // так что после сбоя на месте file лежит либо старый снимок, либо новый целиком.
+    // Файл пишется обычной записью в канал, а не через отображение: отображённый файл нельзя
+    // надёжно переименовать, пока отображение не освобождено. Возвращает размер в байтах
+    public static long write(Path file, Source source, int lastAssignedId, ProductColumns columns)
+            throws IOException {
+        long size = HEADER_SIZE + columns.snapshotSize() + TRAILER_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Снимок слишком велик: " + size + " байт");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(source.size());
+        buffer.putLong(source.stamp());
+        buffer.putLong(source.checksum());
+        buffer.putInt(lastAssignedId);
+        columns.write(buffer);
+        if (buffer.position() != size - TRAILER_SIZE) {
+            throw new IllegalStateException("Размер снимка не совпал с расчётным");
+        }
+        buffer.putInt(crc(buffer, (int) size - TRAILER_SIZE));
+        buffer.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return size;
+    }
+
+    // Заполняет пустую columns из снимка и возвращает последний выданный id.
+    // Снимок подходит, если размер и отметка источника совпали, а если отметка другая
+    // (например, файл скопирован заново) - если совпала контрольная сумма содержимого.
+    // Заголовок и CRC проверяются до чтения столбцов, поэтому при отказе columns остаётся пустой
+    public static int read(Path file, Source source, Checksum checksum, ProductColumns columns) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Неверный размер снимка: " + size + " байт");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getLong() != MAGIC) {
+                throw new IOException("Файл не является снимком продуктов");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Версия формата снимка " + version + ", ожидается " + FORMAT_VERSION);
+            }
+            Source stored = new Source(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            boolean sameSource = stored.size() == source.size()
+                    && (sameKnown(stored.size(), source.size()) && sameKnown(stored.stamp(), source.stamp())
+                    || stored.checksum() == checksum.compute());
+            if (!sameSource) {
+                throw new IOException("Снимок сделан из другой версии CSV");
+            }
+            int lastAssignedId = buffer.getInt();
+            int end = (int) size - TRAILER_SIZE;
+            if (crc(buffer, end) != buffer.getInt(end)) {
+                throw new IOException("Контрольная сумма снимка не совпадает");
+            }
+            columns.read(buffer);
+            if (buffer.position() != end) {
+                throw new IOException("Снимок повреждён: лишние байты после столбцов");
+            }
+            return lastAssignedId;
+        }
+    }
+
+    // UNKNOWN не равно ничему, даже другому UNKNOWN
+    private static boolean sameKnown(long stored, long current) {
+        return stored != UNKNOWN && stored == current;
+    }
+
+    private static int crc(ByteBuffer buffer, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, length));
+        return (int) crc.getValue();
+    }
+}
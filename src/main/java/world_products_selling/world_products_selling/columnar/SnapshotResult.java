@@ -0,0 +1,9 @@
+package world_products_selling.world_products_selling.columnar;
+
+public record SnapshotResult(
+        String path,
+        int rows,
+        long bytes,
+        long elapsedMillis
+) {
+}
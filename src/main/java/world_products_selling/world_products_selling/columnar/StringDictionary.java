@@ -0,0 +1,75 @@
+package world_products_selling.world_products_selling.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарь строковых значений столбца: каждая различная строка хранится один раз,
+// в строках таблицы остаются только её целочисленные коды. null кодируется как NULL_CODE.
+// Не потокобезопасен - синхронизация на стороне владельца.
+public class StringDictionary {
+    public static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    // Код уже известного значения или NULL_CODE, если значения в словаре нет
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        return codes.getOrDefault(value, NULL_CODE);
+    }
+
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    // Размер в снимке: число значений, затем длина и байты UTF-8 каждого
+    long snapshotSize() {
+        long bytes = Integer.BYTES;
+        for (String value : values) {
+            bytes += Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(values.size());
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    // Значения получают те же коды, что при записи; словарь должен быть пуст
+    void read(ByteBuffer in) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            encode(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package world_products_selling.world_products_selling.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Таблица product заполнялась через IDENTITY до перехода на последовательность,
+// поэтому перед приёмом запросов product_seq сдвигается за максимальный id.
+// Генератор работает в режиме pooled-lo: значение последовательности - начало блока id.
+@Component
+@Profile("!CsvEngine")
+public class ProductSequenceInitializer implements SmartInitializingSingleton {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductSequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM product", Integer.class);
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PRODUCT_SEQ'",
+                Long.class);
+        if (maxId != null && nextValue != null && nextValue <= maxId) {
+            jdbcTemplate.execute("ALTER SEQUENCE product_seq RESTART WITH " + (maxId + 1L));
+        }
+    }
+}
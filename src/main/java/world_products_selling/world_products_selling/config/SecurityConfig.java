@@ -1,5 +1,7 @@
 package world_products_selling.world_products_selling.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -15,8 +17,12 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import world_products_selling.world_products_selling.repository.PersonRepository;
+import world_products_selling.world_products_selling.security.CachingAuthenticationProvider;
+import world_products_selling.world_products_selling.security.ExpiringUserCache;
 import world_products_selling.world_products_selling.service.PersonService;
 
+import java.time.Duration;
+
 import static org.springframework.boot.autoconfigure.security.servlet.PathRequest.toH2Console;
 
 @Configuration
@@ -52,18 +58,32 @@ public class SecurityConfig {
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider(
+    public ExpiringUserCache userCache(
+            @Value("${app.security.auth-cache.ttl:5m}") Duration ttl,
+            @Value("${app.security.auth-cache.max-size:10000}") int maxSize) {
+        return new ExpiringUserCache(ttl, maxSize);
+    }
+
+    // BCrypt выполняется только при первом входе с данной парой логин/пароль,
+    // повторные запросы в пределах ttl проверяются по кэшу
+    @Bean
+    public CachingAuthenticationProvider authenticationProvider(
             UserDetailsService userDetailsService,
-            BCryptPasswordEncoder passwordEncoder) {
+            BCryptPasswordEncoder passwordEncoder,
+            ExpiringUserCache userCache,
+            @Value("${app.security.auth-cache.ttl:5m}") Duration ttl,
+            @Value("${app.security.auth-cache.max-size:10000}") int maxSize,
+            MeterRegistry meterRegistry) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
-        return authProvider;
+        authProvider.setUserCache(userCache);
+        return new CachingAuthenticationProvider(authProvider, ttl, maxSize, meterRegistry);
     }
 
     @Bean
     public AuthenticationManager authenticationManager(
-            DaoAuthenticationProvider authenticationProvider) {
+            CachingAuthenticationProvider authenticationProvider) {
         return new ProviderManager(authenticationProvider);
     }
 
@@ -72,11 +92,13 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers(toH2Console())
-                        .ignoringRequestMatchers("/api/**")
+                        .ignoringRequestMatchers("/api/**", "/admin/**")
                 )
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/**").hasAnyRole("ADMIN", "USER")
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/login/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                         .requestMatchers(toH2Console()).permitAll()
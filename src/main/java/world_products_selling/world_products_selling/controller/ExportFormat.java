@@ -0,0 +1,117 @@
+package world_products_selling.world_products_selling.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+// Форматы выгрузки /api/products/export. Строки пишутся в поток по одной через буфер BUFFER_SIZE,
+// так что память не зависит от числа строк. Ошибка записи (клиент закрыл соединение)
+// выбрасывается как UncheckedIOException и прерывает чтение из базы.
+enum ExportFormat {
+    CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "products.csv") {
+        private static final String HEADER =
+                "Id,Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit\n";
+
+        @Override
+        void write(OutputStream out, ObjectMapper objectMapper, Consumer<Consumer<? super Product>> rows)
+                throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write(HEADER);
+            rows.accept(product -> {
+                try {
+                    writer.write(String.valueOf(product.getId()));
+                    writeField(writer, product.getRegion());
+                    writeField(writer, product.getCountry());
+                    writeField(writer, product.getItemType());
+                    writeField(writer, product.getSalesChannel());
+                    writeField(writer, product.getOrderPriority());
+                    writeField(writer, product.getOrderDate());
+                    writeField(writer, product.getUnitsSold());
+                    writeField(writer, product.getTotalProfit());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        }
+    },
+
+    // Один JSON-объект в строке, поля как в остальных ответах API
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "products.ndjson") {
+        @Override
+        void write(OutputStream out, ObjectMapper objectMapper, Consumer<Consumer<? super Product>> rows)
+                throws IOException {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            rows.accept(product -> {
+                try {
+                    generator.writeObject(product);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.close();
+        }
+    };
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MediaType mediaType;
+    private final String fileName;
+
+    ExportFormat(MediaType mediaType, String fileName) {
+        this.mediaType = mediaType;
+        this.fileName = fileName;
+    }
+
+    MediaType mediaType() {
+        return mediaType;
+    }
+
+    String fileName() {
+        return fileName;
+    }
+
+    static ExportFormat of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Неизвестный формат выгрузки: " + name);
+        }
+    }
+
+    // rows передаёт потребителю все выгружаемые строки
+    abstract void write(OutputStream out, ObjectMapper objectMapper, Consumer<Consumer<? super Product>> rows)
+            throws IOException;
+
+    // Поле после запятой; строки с запятой, кавычкой или переводом строки берутся в кавычки
+    private static void writeField(Writer writer, Object value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,34 @@
+package world_products_selling.world_products_selling.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.ingest.CsvSource;
+import world_products_selling.world_products_selling.ingest.RefreshResult;
+
+import java.io.IOException;
+
+// Доступен только ADMIN (правило /admin/** в SecurityConfig)
+@RestController
+@RequestMapping("/admin/import")
+@Profile("!CsvEngine")
+public class ImportController {
+    private final CsvSource csvSource;
+
+    public ImportController(CsvSource csvSource) {
+        this.csvSource = csvSource;
+    }
+
+    // Применяет изменения файла продаж: добавляет, изменяет и удаляет только отличающиеся строки
+    @PostMapping("/refresh")
+    public RefreshResult refresh() {
+        try {
+            return csvSource.refresh();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось прочитать файл продаж", e);
+        }
+    }
+}
@@ -1,28 +1,203 @@
 package world_products_selling.world_products_selling.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.dto.ProductPage;
 import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.service.ProductChangeFeed;
 import world_products_selling.world_products_selling.service.ProductService;
+import world_products_selling.world_products_selling.service.ProductVersions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ProductVersions productVersions;
+    private final ProductChangeFeed productChangeFeed;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ObjectMapper objectMapper, ProductVersions productVersions,
+                             ProductChangeFeed productChangeFeed) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.productVersions = productVersions;
+        this.productChangeFeed = productChangeFeed;
     }
 
+    // Если ETag из If-None-Match совпал, checkNotModified уже подготовил ответ 304 без тела
     @GetMapping()
-    public Iterable<Product> getAll() {
+    public Iterable<Product> getAll(WebRequest request) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
         return productService.getAll();
     }
 
+    @GetMapping("/page")
+    public ProductPage getPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
+    ) {
+        return productService.getPage(cursor, size);
+    }
+
+    // Например: /search?region=Europe&itemType=Cereal&from=2014-01-01&minProfit=100000&size=50
+    @GetMapping("/search")
+    public ProductPage search(
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) String salesChannel,
+            @RequestParam(required = false) String orderPriority,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Double minProfit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
+    ) {
+        ProductFilter filter = new ProductFilter(
+                region, country, itemType, salesChannel, orderPriority, from, to, minProfit);
+        return productService.search(filter, cursor, size);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                productService.streamAll(product -> {
+                    try {
+                        generator.writeObject(product);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // Например: /export?format=csv&region=Europe&from=2014-01-01. Фильтры - как у /search.
+    // Строки читаются из курсора базы и сразу пишутся в ответ; при Accept-Encoding: gzip
+    // ответ сжимается на лету с уровнем BEST_SPEED, чтобы сжатие не отставало от сети
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) String salesChannel,
+            @RequestParam(required = false) String orderPriority,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Double minProfit,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        ProductFilter filter = new ProductFilter(
+                region, country, itemType, salesChannel, orderPriority, from, to, minProfit);
+        productService.validate(filter);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, ExportFormat.BUFFER_SIZE) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+                exportFormat.write(compressed, objectMapper, rows -> productService.export(filter, rows));
+                compressed.finish();
+            } else {
+                exportFormat.write(out, objectMapper, rows -> productService.export(filter, rows));
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportFormat.fileName()).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // События insert, update, delete и resync; data - {"sequence", "type", "id", "product"}.
+    // Клиент EventSource при переподключении сам передаёт Last-Event-ID, curl - параметром after
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) String after
+    ) {
+        SseEmitter emitter = new SseEmitter();
+        productChangeFeed.subscribe(emitter, lastEventId != null ? lastEventId : after);
+        return emitter;
+    }
+
+    // Например: /stats?groupBy=region,itemType&metrics=sum(totalProfit),avg(unitsSold),count
+    @GetMapping("/stats")
+    public List<Map<String, Object>> getStats(
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) List<String> metrics,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
+        return productService.getStats(groupBy, metrics);
+    }
+
+    // Например: /timeseries?bucket=quarter&from=2014-01-01&to=2015-12-31&groupBy=region&metrics=sum(totalProfit)
+    @GetMapping("/timeseries")
+    public List<Map<String, Object>> getTimeSeries(
+            @RequestParam(defaultValue = "month") String bucket,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) List<String> metrics,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
+        return productService.getTimeSeries(bucket, from, to, groupBy, metrics);
+    }
+
+    // Попадания, промахи и вытеснения кэша чтений (профиль ProductCache)
+    @GetMapping("/cache")
+    public Map<String, ExpiringCache.Stats> getCacheStats() {
+        return productService.getCacheStats();
+    }
+
     @GetMapping("/{id}")
-    public Product getOne(@PathVariable Integer id) {
+    public Product getOne(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(productVersions.rowTag(id)))
+            return null;
         return productService.getOne(id);
     }
 
@@ -34,6 +209,14 @@ public class ProductController {
         return new ResponseEntity<>(p, HttpStatus.CREATED);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<Product>> addAll(
+            @RequestBody List<Product> products
+    ) {
+        List<Product> saved = productService.addAll(products);
+        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+    }
+
     @PutMapping
     public Product update(
             @RequestBody Product product
@@ -41,17 +224,72 @@ public class ProductController {
         return productService.update(product);
     }
 
+    // В теле - только изменяемые поля, например {"totalProfit": 1200.5, "version": 3}
+    @PatchMapping("/{id}")
+    public Product patch(
+            @PathVariable Integer id,
+            @RequestBody JsonNode changes
+    ) {
+        return productService.patch(id, product -> {
+            try {
+                objectMapper.readerForUpdating(product).readValue(changes);
+            } catch (IOException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректные поля записи");
+            }
+        });
+    }
+
+    // version необязательна: если указана, запись удаляется, только пока её не изменили
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @DeleteMapping("/{id}")
     public void delete(
-            @PathVariable Integer id
+            @PathVariable Integer id,
+            @RequestParam(required = false) Integer version
     ) {
-        productService.delete(id);
+        productService.delete(id, version);
     }
 
     @GetMapping("/avg")
-    public Double AverageProfitPerUnit() {
+    public Double AverageProfitPerUnit(WebRequest request) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
         return productService.findAverageProfitPerUnit();
     }
 
+    // Например: /percentiles?p=50,95,99.9 - перцентили прибыли на единицу с относительной ошибкой из relativeAccuracy
+    @GetMapping("/percentiles")
+    public Map<String, Object> profitPerUnitPercentiles(
+            @RequestParam(name = "p", required = false) List<Double> percentiles,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
+        return productService.getProfitPerUnitPercentiles(percentiles);
+    }
+
+    // Например: /top?by=country&metric=totalProfit&k=10
+    @GetMapping("/top")
+    public List<Map<String, Object>> getTop(
+            @RequestParam String by,
+            @RequestParam(defaultValue = "totalProfit") String metric,
+            @RequestParam(required = false) Integer k,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
+        return productService.getTop(by, metric, k);
+    }
+
+    // Например: /distinct?count=country&groupBy=itemType
+    @GetMapping("/distinct")
+    public List<Map<String, Object>> getDistinctCounts(
+            @RequestParam String count,
+            @RequestParam(required = false) String groupBy,
+            WebRequest request
+    ) {
+        if (request.checkNotModified(productVersions.tableTag()))
+            return null;
+        return productService.getDistinctCounts(count, groupBy);
+    }
+
 }
@@ -0,0 +1,36 @@
+package world_products_selling.world_products_selling.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.columnar.SnapshotResult;
+import world_products_selling.world_products_selling.repository.CsvProductRepository;
+
+import java.io.IOException;
+
+// Доступен только ADMIN (правило /admin/** в SecurityConfig)
+@RestController
+@RequestMapping("/admin/snapshot")
+@Profile("CsvEngine")
+public class SnapshotController {
+    private final CsvProductRepository repository;
+
+    public SnapshotController(CsvProductRepository repository) {
+        this.repository = repository;
+    }
+
+    // Сохраняет текущие данные в снимок, который загрузится при следующем запуске
+    @PostMapping
+    public SnapshotResult write() {
+        try {
+            return repository.writeSnapshot();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось записать снимок", e);
+        }
+    }
+}
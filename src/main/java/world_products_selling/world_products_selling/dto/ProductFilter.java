@@ -0,0 +1,78 @@
+package world_products_selling.world_products_selling.dto;
+
+import world_products_selling.world_products_selling.analytics.Dimension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Условия поиска продуктов, null - условие не задано, пустая строка считается незаданной.
+// Строковые поля сравниваются на равенство, from, to и minProfit - границы включительно.
+public record ProductFilter(
+        String region,
+        String country,
+        String itemType,
+        String salesChannel,
+        String orderPriority,
+        LocalDate from,
+        LocalDate to,
+        Double minProfit
+) {
+    public enum Criterion {
+        REGION(Dimension.REGION),
+        COUNTRY(Dimension.COUNTRY),
+        ITEM_TYPE(Dimension.ITEM_TYPE),
+        SALES_CHANNEL(Dimension.SALES_CHANNEL),
+        ORDER_PRIORITY(Dimension.ORDER_PRIORITY),
+        FROM(null),
+        TO(null),
+        MIN_PROFIT(null);
+
+        private final Dimension dimension;
+
+        Criterion(Dimension dimension) {
+            this.dimension = dimension;
+        }
+
+        // Столбец, на равенство которому проверяет условие; null для диапазонов
+        public Dimension dimension() {
+            return dimension;
+        }
+    }
+
+    public ProductFilter {
+        region = blankToNull(region);
+        country = blankToNull(country);
+        itemType = blankToNull(itemType);
+        salesChannel = blankToNull(salesChannel);
+        orderPriority = blankToNull(orderPriority);
+    }
+
+    public Object value(Criterion criterion) {
+        return switch (criterion) {
+            case REGION -> region;
+            case COUNTRY -> country;
+            case ITEM_TYPE -> itemType;
+            case SALES_CHANNEL -> salesChannel;
+            case ORDER_PRIORITY -> orderPriority;
+            case FROM -> from;
+            case TO -> to;
+            case MIN_PROFIT -> minProfit;
+        };
+    }
+
+    // Заданные условия в порядке объявления Criterion
+    public List<Criterion> criteria() {
+        List<Criterion> criteria = new ArrayList<>();
+        for (Criterion criterion : Criterion.values()) {
+            if (value(criterion) != null) {
+                criteria.add(criterion);
+            }
+        }
+        return criteria;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,8 @@
+package world_products_selling.world_products_selling.dto;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+
+public record ProductPage(List<Product> items, String next) {
+}
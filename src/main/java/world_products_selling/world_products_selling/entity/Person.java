@@ -1,11 +1,14 @@
 package world_products_selling.world_products_selling.entity;
 
 import jakarta.persistence.*;
+import world_products_selling.world_products_selling.security.PersonCacheEvictionListener;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "persons")
+@EntityListeners(PersonCacheEvictionListener.class)
 public class Person {
 
     @Id
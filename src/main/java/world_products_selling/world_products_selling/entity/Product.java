@@ -1,23 +1,52 @@
 package world_products_selling.world_products_selling.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import world_products_selling.world_products_selling.repository.ProductDictionary;
 
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "product")
+// Индексы для GET /api/products/search: столбцы кодов дополнены id для постраничного чтения по курсору
+@Table(name = "product", indexes = {
+        @Index(name = "idx_product_region_code", columnList = "region_code, id"),
+        @Index(name = "idx_product_country_code", columnList = "country_code, id"),
+        @Index(name = "idx_product_item_type_code", columnList = "item_type_code, id"),
+        @Index(name = "idx_product_sales_channel_code", columnList = "sales_channel_code, id"),
+        @Index(name = "idx_product_order_priority_code", columnList = "order_priority_code, id"),
+        @Index(name = "idx_product_order_date", columnList = "order_date"),
+        @Index(name = "idx_product_total_profit", columnList = "total_profit")
+})
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     Integer id;
+    // Строковые значения хранятся в таблице кодами из ProductDictionary
+    @Column(name = "region_code")
+    @Convert(converter = ProductDictionary.RegionConverter.class)
     String region;
+    @Column(name = "country_code")
+    @Convert(converter = ProductDictionary.CountryConverter.class)
     String country;
+    @Column(name = "item_type_code")
+    @Convert(converter = ProductDictionary.ItemTypeConverter.class)
     String itemType;
+    @Column(name = "sales_channel_code")
+    @Convert(converter = ProductDictionary.SalesChannelConverter.class)
     String salesChannel;
+    @Column(name = "order_priority_code")
+    @Convert(converter = ProductDictionary.OrderPriorityConverter.class)
     String orderPriority;
     LocalDate orderDate;
     Integer unitsSold;
     Double totalProfit;
+    // Растёт при каждом изменении строки; значение по умолчанию нужно, чтобы
+    // ddl-auto=update смог добавить столбец в уже заполненную таблицу
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    Integer version;
 
     public Integer getId() {
         return id;
@@ -90,4 +119,12 @@ public class Product {
     public void setTotalProfit(Double totalProfit) {
         this.totalProfit = totalProfit;
     }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,713 @@
+package world_products_selling.world_products_selling.ingest;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import world_products_selling.world_products_selling.config.CsvDataLoader;
+import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.repository.ImportCheckpointRepository;
+import world_products_selling.world_products_selling.repository.ImportRowRepository;
+import world_products_selling.world_products_selling.repository.ProductStore;
+import world_products_selling.world_products_selling.service.ProductChangedEvent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+@Service
+@Profile("!CsvEngine")
+public class CsvImportService {
+    private static final Logger log = LoggerFactory.getLogger(CsvImportService.class);
+    private static final long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+    private static final int DATE_SAMPLE_SIZE = 1000;
+    private static final long MIN_RANGE_SIZE = 1 << 20;
+    private static final long MAX_RANGE_SIZE = 256L << 20;
+    private static final List<Product> END = List.of();
+    // Записей в памяти на каждую сортировку обновления, остальные вытесняются на диск
+    private static final int SORT_RUN_SIZE = 64 * 1024;
+
+    private final ProductStore productRepository;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final ImportRowRepository importRowRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int writers;
+    // Импорт и обновление одного источника не выполняются одновременно
+    private final Lock lock = new ReentrantLock();
+    // Строки CSV по результату: parsed - прочитаны из файла, rejected - не разобраны, inserted - сохранены,
+    // updated и deleted - изменены и удалены при обновлении
+    private final Counter parsedRows;
+    private final Counter rejectedRows;
+    private final Counter insertedRows;
+    private final Counter updatedRows;
+    private final Counter deletedRows;
+
+    public CsvImportService(
+            ProductStore productRepository,
+            ImportCheckpointRepository checkpointRepository,
+            ImportRowRepository importRowRepository,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${app.csv.chunk-size:1000}") int chunkSize,
+            @Value("${app.csv.parallelism:0}") int parallelism,
+            @Value("${app.csv.writers:2}") int writers
+    ) {
+        this.productRepository = productRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.importRowRepository = importRowRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.writers = writers;
+        this.parsedRows = rows(meterRegistry, "parsed");
+        this.rejectedRows = rows(meterRegistry, "rejected");
+        this.insertedRows = rows(meterRegistry, "inserted");
+        this.updatedRows = rows(meterRegistry, "updated");
+        this.deletedRows = rows(meterRegistry, "deleted");
+    }
+
+    // Читает CSV построчно и сохраняет строки порциями по chunkSize, каждую в своей транзакции.
+    // Вместе с порцией в той же транзакции сохраняется число обработанных строк,
+    // поэтому после сбоя повторный вызов продолжает с первой незафиксированной строки.
+    public ImportResult importCsv(String source, Reader reader) throws IOException {
+        lock.lock();
+        try {
+            return importRows(source, reader);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Первая загрузка файла: участки файла разбираются параллельно (MappedCsvReader) в parallelism потоках
+    // ForkJoinPool, порции по chunkSize продуктов через ограниченную очередь сохраняют writers потоков,
+    // каждая порция - в своей транзакции вместе с отпечатками строк. Порядок строк не сохраняется,
+    // поэтому контрольная точка записывается только в конце: прерванную загрузку продолжает refresh,
+    // который найдёт уже сохранённые строки по отпечаткам. Если контрольная точка уже есть,
+    // файл дочитывается последовательно, как в importCsv.
+    public ImportResult importFile(String source, Path file) throws IOException {
+        lock.lock();
+        try {
+            if (checkpointRepository.findBySource(source).isPresent()) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    return importRows(source, reader);
+                }
+            }
+            return importParallel(source, file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Повторно читает source и применяет только отличия от уже загруженного.
+    // Для каждого загруженного продукта в import_row хранится отпечаток его строки (RowFingerprint).
+    // Отпечатки строк файла сортируются (SortedRecords, с вытеснением на диск) и сливаются с отпечатками
+    // из import_row, прочитанными по возрастанию: совпавшие строки не трогаются. Пропавшая и новая строка
+    // с одним ключом продажи (RowFingerprint.orderKey) - изменение продукта, остальные пропавшие удаляются,
+    // остальные новые добавляются. Изменённые и новые строки берутся вторым проходом по файлу, поэтому
+    // память не зависит от размера файла, а записей в базу столько, сколько отличий.
+    // Изменения фиксируются порциями вместе со своими отпечатками, так что прерванное обновление можно повторить.
+    // Если отпечатков source ещё нет, а продукты есть (база загружена до их появления), с файлом так же
+    // сопоставляются все продукты, но оставшиеся без пары не удаляются: это могут быть записи, созданные через API.
+    // Пары тогда ищутся по всем столбцам, кроме даты: так исправляются строки, загруженные раньше без неё.
+    // Усыновление тоже фиксируется порциями, а отметка adopting в контрольной точке снимается только в конце:
+    // прерванное усыновление продолжается при следующем обновлении, которое снова сопоставляет с файлом
+    // все продукты, уже усыновлённые в том числе, а не добавляет строки остальных заново.
+    public RefreshResult refresh(String source, CsvReaderSource csv) throws IOException {
+        lock.lock();
+        try {
+            boolean adopting = checkpointRepository.isAdopting(source)
+                    || !importRowRepository.existsBySource(source) && productRepository.count() > 0;
+            if (adopting) {
+                checkpointRepository.saveAdopting(source, true);
+            }
+            RefreshResult result = refreshRows(source, csv, adopting);
+            if (adopting) {
+                checkpointRepository.saveAdopting(source, false);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Открывает файл заново для каждого прохода обновления
+    @FunctionalInterface
+    public interface CsvReaderSource {
+        Reader open() throws IOException;
+    }
+
+    private ImportResult importRows(String source, Reader reader) throws IOException {
+        long started = System.nanoTime();
+        ImportCheckpoint checkpoint = checkpointRepository.findBySource(source)
+                .orElse(new ImportCheckpoint(source, 0, false));
+        if (checkpoint.completed()) {
+            return new ImportResult(source, 0, 0, 0, checkpoint.rowsCommitted(), 0);
+        }
+
+        long resumed = checkpoint.rowsCommitted();
+        long consumed = resumed;
+        long inserted = 0;
+        long rejected = 0;
+        long lastReport = started;
+        List<Product> chunk = new ArrayList<>(chunkSize);
+
+        try (CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
+            if (resumed > 0) {
+                log.info("Продолжаем импорт {} со строки {}", source, resumed + 1);
+            }
+
+            Lines lines = new Lines(csvReader, resumed);
+            String[] line;
+            while ((line = lines.next()) != null) {
+                consumed++;
+                Product product = parse(source, consumed, line, lines.dateParser);
+                if (product == null) {
+                    rejected++;
+                } else {
+                    chunk.add(product);
+                }
+
+                if (chunk.size() == chunkSize) {
+                    inserted += commit(source, chunk, List.of(), new ImportCheckpoint(source, consumed, false));
+                    chunk.clear();
+
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        log.info("Импорт {}: обработано {} строк ({} строк/с)",
+                                source, consumed, rate(consumed - resumed, now - started));
+                        lastReport = now;
+                    }
+                }
+            }
+            inserted += commit(source, chunk, List.of(), new ImportCheckpoint(source, consumed, true));
+        } catch (CsvValidationException e) {
+            throw new IOException("Ошибка разбора " + source + " после строки " + consumed, e);
+        }
+
+        long elapsed = System.nanoTime() - started;
+        log.info("Импорт {} завершён: загружено {} продуктов, отклонено {} строк ({} строк/с)",
+                source, inserted, rejected, rate(consumed - resumed, elapsed));
+        return new ImportResult(source, consumed - resumed, inserted, rejected, resumed, elapsed / 1_000_000);
+    }
+
+    private ImportResult importParallel(String source, Path file) throws IOException {
+        long started = System.nanoTime();
+        AtomicLong read = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong inserted = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        BlockingQueue<List<Product>> batches = new ArrayBlockingQueue<>(writers * 2);
+
+        List<Thread> writerThreads = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            writerThreads.add(Thread.ofPlatform().name("csv-writer-" + i).start(() -> {
+                try {
+                    List<Product> batch;
+                    while ((batch = batches.take()) != END) {
+                        if (failure.get() == null) {
+                            inserted.addAndGet(commit(source, batch, List.of(), null));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    // Разборщики не должны ждать места в очереди, которую больше никто не читает
+                    batches.clear();
+                }
+            }));
+        }
+
+        ForkJoinPool parsers = new ForkJoinPool(parallelism);
+        try (MappedCsvReader csv = new MappedCsvReader(file)) {
+            DateParser dateParser = DateParser.sniff(csv.head(DATE_SAMPLE_SIZE), CsvDataLoader.DATE_COLUMN);
+            long rangeSize = Math.clamp(csv.size() / (parallelism * 4L), MIN_RANGE_SIZE, MAX_RANGE_SIZE);
+            List<MappedCsvReader.Range> ranges = csv.split(rangeSize, parsers);
+            log.info("Импорт {}: {} МБ, {} участков, {} потоков разбора, {} потоков записи",
+                    file, csv.size() >> 20, ranges.size(), parallelism, writers);
+
+            List<Callable<Void>> tasks = new ArrayList<>(ranges.size());
+            for (MappedCsvReader.Range range : ranges) {
+                tasks.add(() -> {
+                    List<Product> batch = new ArrayList<>(chunkSize);
+                    csv.read(range, line -> {
+                        read.incrementAndGet();
+                        Product product = parse(source, "из участка с байта " + range.start(), line, dateParser);
+                        if (product == null) {
+                            rejected.incrementAndGet();
+                            return;
+                        }
+                        batch.add(product);
+                        if (batch.size() == chunkSize) {
+                            put(batches, new ArrayList<>(batch), failure);
+                            batch.clear();
+                        }
+                    });
+                    if (!batch.isEmpty()) {
+                        put(batches, batch, failure);
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> task : parsers.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } finally {
+            parsers.shutdown();
+            for (int i = 0; i < writers; i++) {
+                put(batches, END, writerThreads);
+            }
+            for (Thread writer : writerThreads) {
+                joinUninterruptibly(writer);
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new IOException("Импорт " + file + " прерван; продолжит его обновление по отличиям", failure.get());
+        }
+        commit(source, List.of(), List.of(), new ImportCheckpoint(source, read.get(), true));
+        long elapsed = System.nanoTime() - started;
+        log.info("Импорт {} завершён: загружено {} продуктов, отклонено {} строк ({} строк/с)",
+                source, inserted.get(), rejected.get(), rate(read.get(), elapsed));
+        return new ImportResult(source, read.get(), inserted.get(), rejected.get(), 0, elapsed / 1_000_000);
+    }
+
+    // Ждёт места в очереди, пока запись не завершилась ошибкой
+    private static void put(BlockingQueue<List<Product>> batches, List<Product> batch, AtomicReference<Throwable> failure) {
+        try {
+            while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw new CancellationException("Запись порций остановлена");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Разбор прерван");
+        }
+    }
+
+    // Ждёт места в очереди, пока жив хотя бы один поток записи
+    private static void put(BlockingQueue<List<Product>> batches, List<Product> batch, List<Thread> writerThreads) {
+        try {
+            while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (writerThreads.stream().noneMatch(Thread::isAlive)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RefreshResult refreshRows(String source, CsvReaderSource csv, boolean adopting) throws IOException {
+        long started = System.nanoTime();
+        ToLongFunction<Product> key = adopting ? RowFingerprint::withoutOrderDate : RowFingerprint::orderKey;
+
+        // (отпечаток, номер строки, ключ); (ключ, номер строки, отпечаток); (ключ, id);
+        // (номер строки, id или 0 для новой, отпечаток)
+        try (SortedRecords lines = new SortedRecords(3, SORT_RUN_SIZE);
+             SortedRecords added = new SortedRecords(3, SORT_RUN_SIZE);
+             SortedRecords removed = new SortedRecords(2, SORT_RUN_SIZE);
+             SortedRecords changes = new SortedRecords(3, SORT_RUN_SIZE)) {
+            long read = 0;
+            long rejected = 0;
+            try (Reader reader = csv.open();
+                 CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
+                Lines file = new Lines(csvReader);
+                String[] line;
+                while ((line = file.next()) != null) {
+                    read++;
+                    Product product = parse(source, read, line, file.dateParser);
+                    if (product == null) {
+                        rejected++;
+                    } else {
+                        lines.add(RowFingerprint.of(product), read, key.applyAsLong(product));
+                    }
+                }
+            } catch (CsvValidationException e) {
+                throw new IOException("Ошибка разбора " + source + " после строки " + read, e);
+            }
+
+            Matcher matcher = new Matcher(source, adopting, key, lines.open(), added, removed);
+            try {
+                if (adopting) {
+                    try (SortedRecords stored = new SortedRecords(3, SORT_RUN_SIZE)) {
+                        productRepository.streamAll(product -> matcher.unchecked(() -> stored.add(
+                                RowFingerprint.of(product), product.getId(), key.applyAsLong(product))));
+                        SortedRecords.Cursor cursor = stored.open();
+                        for (long[] row = cursor.next(); row != null; row = cursor.next()) {
+                            matcher.stored(row[0], (int) row[1], row[2]);
+                        }
+                    }
+                } else {
+                    importRowRepository.forEach(source, row ->
+                            matcher.unchecked(() -> matcher.stored(row.fingerprint(), row.productId())));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            matcher.finish();
+
+            long deleted = pair(added, removed, changes, adopting);
+            long[] applied = apply(source, csv, changes);
+
+            commit(source, List.of(), List.of(), new ImportCheckpoint(source, read, true));
+            long elapsed = System.nanoTime() - started;
+            log.info("Обновление {} завершено: без изменений {}, добавлено {}, изменено {}, удалено {}, "
+                            + "отклонено {} строк ({} мс)", source, matcher.unchanged, applied[1], applied[0], deleted,
+                    rejected, elapsed / 1_000_000);
+            return new RefreshResult(source, read, matcher.unchanged, applied[1], applied[0], deleted, rejected,
+                    elapsed / 1_000_000);
+        }
+    }
+
+    // Сливает новые и пропавшие строки по ключу продажи: пары становятся изменениями, новые без пары -
+    // добавлениями, пропавшие без пары удаляются сразу (при усыновлении - остаются). Возвращает число удалённых
+    private long pair(SortedRecords added, SortedRecords removed, SortedRecords changes, boolean adopting)
+            throws IOException {
+        long deleted = 0;
+        List<Integer> deletes = new ArrayList<>(chunkSize);
+        SortedRecords.Cursor newLines = added.open();
+        SortedRecords.Cursor oldRows = removed.open();
+        long[] line = newLines.next();
+        long[] row = oldRows.next();
+        while (line != null || row != null) {
+            int order = line == null ? 1 : row == null ? -1 : Long.compare(line[0], row[0]);
+            if (order <= 0) {
+                changes.add(line[1], order == 0 ? row[1] : 0, line[2]);
+                line = newLines.next();
+            }
+            if (order > 0 && !adopting) {
+                deletes.add((int) row[1]);
+                if (deletes.size() >= chunkSize) {
+                    deleted += delete(deletes);
+                    deletes.clear();
+                }
+            }
+            if (order >= 0) {
+                row = oldRows.next();
+            }
+        }
+        return deleted + delete(deletes);
+    }
+
+    // Второй проход по файлу: сохраняет изменённые и новые строки порциями. Строка с другим отпечатком,
+    // чем при первом проходе, значит, что файл изменился во время обновления: тогда обновление прерывается,
+    // уже сохранённые порции учтены в import_row, и следующее обновление продолжит с них.
+    // Возвращает {изменено, добавлено}
+    private long[] apply(String source, CsvReaderSource csv, SortedRecords changes) throws IOException {
+        long updated = 0;
+        long inserted = 0;
+        List<Product> updates = new ArrayList<>(chunkSize);
+        List<Product> inserts = new ArrayList<>(chunkSize);
+        SortedRecords.Cursor cursor = changes.open();
+        long[] change = cursor.next();
+        long number = 0;
+        try (Reader reader = csv.open();
+             CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
+            Lines file = new Lines(csvReader);
+            String[] line;
+            while (change != null && (line = file.next()) != null) {
+                if (++number != change[0]) {
+                    continue;
+                }
+                Product product = CsvDataLoader.toProduct(line, file.dateParser);
+                if (product == null || RowFingerprint.of(product) != change[2]) {
+                    break;
+                }
+                if (change[1] != 0) {
+                    product.setId((int) change[1]);
+                    updates.add(product);
+                } else {
+                    inserts.add(product);
+                }
+                if (updates.size() >= chunkSize) {
+                    updated += update(source, updates);
+                    updates.clear();
+                }
+                if (inserts.size() >= chunkSize) {
+                    inserted += commit(source, inserts, List.of(), null);
+                    inserts.clear();
+                }
+                change = cursor.next();
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Ошибка разбора " + source + " после строки " + number, e);
+        }
+        updated += update(source, updates);
+        if (!inserts.isEmpty()) {
+            inserted += commit(source, inserts, List.of(), null);
+        }
+        if (change != null) {
+            throw new IOException(source + " изменился во время обновления (строка " + change[0] + ")");
+        }
+        return new long[]{updated, inserted};
+    }
+
+    // Слияние отпечатков файла (по возрастанию) с загруженными строками, которые подаются тоже
+    // по возрастанию отпечатка. Новые строки попадают в added, пропавшие продукты - в removed с ключом продажи;
+    // продукты, для которых ключ неизвестен, читаются из базы порциями
+    private final class Matcher {
+        private final String source;
+        private final boolean adopting;
+        private final ToLongFunction<Product> key;
+        private final SortedRecords.Cursor lines;
+        private final SortedRecords added;
+        private final SortedRecords removed;
+        private final List<ImportRow> adopted = new ArrayList<>();
+        private final List<Integer> pending = new ArrayList<>();
+        private long[] line;
+        long unchanged;
+
+        Matcher(String source, boolean adopting, ToLongFunction<Product> key, SortedRecords.Cursor lines,
+                SortedRecords added, SortedRecords removed) throws IOException {
+            this.source = source;
+            this.adopting = adopting;
+            this.key = key;
+            this.lines = lines;
+            this.added = added;
+            this.removed = removed;
+            this.line = lines.next();
+        }
+
+        void stored(long fingerprint, int productId) throws IOException {
+            if (!matched(fingerprint, productId)) {
+                pending.add(productId);
+                if (pending.size() >= chunkSize) {
+                    resolvePending();
+                }
+            }
+        }
+
+        void stored(long fingerprint, int productId, long orderKey) throws IOException {
+            if (!matched(fingerprint, productId)) {
+                removed.add(orderKey, productId);
+            }
+        }
+
+        void finish() throws IOException {
+            for (; line != null; line = lines.next()) {
+                added.add(line[2], line[1], line[0]);
+            }
+            resolvePending();
+            if (!adopted.isEmpty()) {
+                commit(source, List.of(), adopted, null);
+                adopted.clear();
+            }
+        }
+
+        void unchecked(IORunnable action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean matched(long fingerprint, int productId) throws IOException {
+            for (; line != null && line[0] < fingerprint; line = lines.next()) {
+                added.add(line[2], line[1], line[0]);
+            }
+            if (line == null || line[0] != fingerprint) {
+                return false;
+            }
+            unchanged++;
+            if (adopting) {
+                adopted.add(new ImportRow(productId, fingerprint));
+                if (adopted.size() >= chunkSize) {
+                    commit(source, List.of(), adopted, null);
+                    adopted.clear();
+                }
+            }
+            line = lines.next();
+            return true;
+        }
+
+        // Продукт, удалённый через API после загрузки, не восстанавливается: забывается только его отпечаток
+        private void resolvePending() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Set<Integer> missing = new HashSet<>(pending);
+            for (Product product : productRepository.findAllById(pending)) {
+                missing.remove(product.getId());
+                removed.add(key.applyAsLong(product), product.getId());
+            }
+            importRowRepository.deleteAll(new ArrayList<>(missing));
+            pending.clear();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+
+    // Возвращает null, если строка не разобрана; location - номер строки или её участок в файле
+    private Product parse(String source, Object location, String[] line, DateParser dateParser) {
+        parsedRows.increment();
+        Product product = CsvDataLoader.toProduct(line, dateParser);
+        if (product == null) {
+            rejectedRows.increment();
+            log.warn("Строка {} в {} отклонена: {}", location, source, String.join(",", line));
+        }
+        return product;
+    }
+
+    // Сохраняет новые продукты и отпечатки их строк; checkpoint, если задан, - в той же транзакции
+    private int commit(String source, List<Product> chunk, List<ImportRow> adopted, ImportCheckpoint checkpoint) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<ImportRow> rows = new ArrayList<>(adopted);
+            if (!chunk.isEmpty()) {
+                for (Product product : productRepository.saveAll(chunk)) {
+                    eventPublisher.publishEvent(new ProductChangedEvent(null, product));
+                    rows.add(new ImportRow(product.getId(), RowFingerprint.of(product)));
+                }
+            }
+            importRowRepository.saveAll(source, rows);
+            if (checkpoint != null) {
+                checkpointRepository.save(checkpoint);
+            }
+        });
+        insertedRows.increment(chunk.size());
+        return chunk.size();
+    }
+
+    // Продукт, удалённый после загрузки через API, не восстанавливается: забывается только его отпечаток
+    private int update(String source, List<Product> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<ImportRow> rows = new ArrayList<>(chunk.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Integer> missing = new ArrayList<>();
+            for (Product product : chunk) {
+                Optional<Product> before = productRepository.update(product);
+                if (before.isPresent()) {
+                    eventPublisher.publishEvent(new ProductChangedEvent(before.get(), product));
+                    rows.add(new ImportRow(product.getId(), RowFingerprint.of(product)));
+                } else {
+                    missing.add(product.getId());
+                }
+            }
+            importRowRepository.deleteAll(missing);
+            importRowRepository.saveAll(source, rows);
+        });
+        updatedRows.increment(rows.size());
+        return rows.size();
+    }
+
+    private int delete(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Product> deleted = new ArrayList<>(ids.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Integer id : ids) {
+                productRepository.delete(id, null).ifPresent(before -> {
+                    eventPublisher.publishEvent(new ProductChangedEvent(before, null));
+                    deleted.add(before);
+                });
+            }
+            importRowRepository.deleteAll(ids);
+        });
+        deletedRows.increment(deleted.size());
+        return deleted.size();
+    }
+
+    private static Counter rows(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("app.csv.rows").tag("result", result).register(meterRegistry);
+    }
+
+    private static long rate(long rows, long nanos) {
+        return nanos > 0 ? rows * 1_000_000_000L / nanos : rows;
+    }
+
+    // Строки файла после заголовка. Порядок дня и месяца в датах определяется один раз по первым строкам
+    private static final class Lines {
+        private final CSVReader csvReader;
+        private final Iterator<String[]> sampled;
+        final DateParser dateParser;
+
+        Lines(CSVReader csvReader) throws IOException, CsvValidationException {
+            this(csvReader, 0);
+        }
+
+        // Порядок дня и месяца определяется по первым строкам файла, даже если чтение продолжается
+        // после skip строк: иначе после сбоя оставшиеся строки могли бы прочитаться с другим порядком
+        Lines(CSVReader csvReader, long skip) throws IOException, CsvValidationException {
+            this.csvReader = csvReader;
+            List<String[]> sample = new ArrayList<>();
+            String[] line;
+            while (sample.size() < DATE_SAMPLE_SIZE && (line = csvReader.readNext()) != null) {
+                sample.add(line);
+            }
+            this.dateParser = DateParser.sniff(sample, CsvDataLoader.DATE_COLUMN);
+            int skippedSample = (int) Math.min(skip, sample.size());
+            this.sampled = sample.subList(skippedSample, sample.size()).iterator();
+            if (skip > skippedSample) {
+                csvReader.skip((int) Math.min(skip - skippedSample, Integer.MAX_VALUE));
+            }
+        }
+
+        String[] next() throws IOException, CsvValidationException {
+            return sampled.hasNext() ? sampled.next() : csvReader.readNext();
+        }
+    }
+}
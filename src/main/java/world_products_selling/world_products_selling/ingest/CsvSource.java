@@ -0,0 +1,195 @@
+package world_products_selling.world_products_selling.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.config.CsvDataLoader;
+import world_products_selling.world_products_selling.repository.ImportCheckpointRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+// Файл продаж, из которого загружаются продукты: app.csv.source-file, если задан, иначе CSV из ресурсов.
+// Оба хранятся под одним ключом CsvDataLoader.SOURCE, так что переход на внешний файл обновляет
+// уже загруженные строки, а не загружает их заново.
+// Внешний файл отслеживается: после его изменения и app.csv.watch-delay без новых изменений
+// (файл дописан) выполняется обновление по отличиям.
+// После полной загрузки и каждого обновления запоминается контрольная сумма файла: при запуске
+// и по событиям отслеживания файл с той же суммой повторно не сравнивается.
+@Component
+@Profile("!CsvEngine")
+public class CsvSource implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CsvSource.class);
+
+    private final CsvImportService importService;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final Path file;
+    private final Duration watchDelay;
+    private volatile WatchService watchService;
+
+    public CsvSource(
+            CsvImportService importService,
+            ImportCheckpointRepository checkpointRepository,
+            @Value("${app.csv.source-file:}") String sourceFile,
+            @Value("${app.csv.watch-delay:2s}") Duration watchDelay
+    ) {
+        this.importService = importService;
+        this.checkpointRepository = checkpointRepository;
+        this.file = sourceFile.isBlank() ? null : Path.of(sourceFile).toAbsolutePath();
+        this.watchDelay = watchDelay;
+    }
+
+    // Внешний файл загружается параллельно, ресурс из jar - последовательно
+    public ImportResult importCsv() throws IOException {
+        long checksum = checksum();
+        ImportResult result;
+        if (file != null) {
+            result = importService.importFile(CsvDataLoader.SOURCE, file);
+        } else {
+            try (Reader reader = open()) {
+                result = importService.importCsv(CsvDataLoader.SOURCE, reader);
+            }
+        }
+        checkpointRepository.saveChecksum(CsvDataLoader.SOURCE, checksum);
+        return result;
+    }
+
+    // Сумма считается до чтения: если файл изменится во время обновления, следующая проверка его не пропустит
+    public RefreshResult refresh() throws IOException {
+        long checksum = checksum();
+        RefreshResult result = importService.refresh(CsvDataLoader.SOURCE, this::open);
+        checkpointRepository.saveChecksum(CsvDataLoader.SOURCE, checksum);
+        return result;
+    }
+
+    // Пусто, если содержимое не менялось с последней загрузки или обновления: тогда файл не разбирается,
+    // и правки загруженных продуктов через API остаются нетронутыми
+    public Optional<RefreshResult> refreshIfChanged() throws IOException {
+        long checksum = checksum();
+        if (checkpointRepository.findChecksum(CsvDataLoader.SOURCE).equals(OptionalLong.of(checksum))) {
+            log.info("{} не изменился с последнего обновления", file != null ? file : CsvDataLoader.SOURCE);
+            return Optional.empty();
+        }
+        RefreshResult result = importService.refresh(CsvDataLoader.SOURCE, this::open);
+        checkpointRepository.saveChecksum(CsvDataLoader.SOURCE, checksum);
+        return Optional.of(result);
+    }
+
+    private Reader open() throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(), StandardCharsets.UTF_8));
+    }
+
+    private InputStream openStream() throws IOException {
+        if (file != null) {
+            return Files.newInputStream(file);
+        }
+        InputStream is = CsvSource.class.getResourceAsStream(CsvDataLoader.SOURCE);
+        if (is == null) {
+            throw new IOException("Не найден ресурс " + CsvDataLoader.SOURCE);
+        }
+        return is;
+    }
+
+    private long checksum() throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream in = new CheckedInputStream(openStream(), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public void start() {
+        if (file == null) {
+            return;
+        }
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            // Редакторы и выгрузки часто заменяют файл переименованием, поэтому отслеживается и создание
+            file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+            Thread.ofVirtual().name("csv-source-watcher").start(() -> watch(service));
+            log.info("Отслеживаем изменения {}", file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось отслеживать " + file, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.warn("Не удалось остановить отслеживание {}", file, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return watchService != null;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                if (!changed(service.take())) {
+                    continue;
+                }
+                // Ждём, пока файл перестанет меняться
+                WatchKey key;
+                while ((key = service.poll(watchDelay.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    changed(key);
+                }
+                try {
+                    refreshIfChanged();
+                } catch (IOException | RuntimeException e) {
+                    log.error("Не удалось обновить данные из {}", file, e);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Приложение останавливается
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // true, если среди событий key есть изменение отслеживаемого файла
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name && file.getFileName().equals(name)) {
+                changed = true;
+            } else if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,158 @@
+package world_products_selling.world_products_selling.ingest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Разбор дат из CSV без исключений и промежуточных объектов: цифры читаются
+// прямо из строки и переводятся в номер дня от 1970-01-01.
+// Поддерживаются M/d/yyyy, d/M/yyyy, d.M.yyyy, d-M-yyyy (день и месяц - одна или две цифры)
+// и yyyy-MM-dd. Порядок дня и месяца через "/" по строке не определить,
+// поэтому он выбирается один раз на столбец по выборке значений - см. sniff.
+public final class DateParser {
+    public static final int NULL_DAY = Integer.MIN_VALUE;
+
+    // Как и прежний разбор, "/" сначала читается как месяц/день
+    public static final DateParser MONTH_FIRST = new DateParser(true);
+    public static final DateParser DAY_FIRST = new DateParser(false);
+
+    private static final long DAYS_0000_TO_1970 = 719_528L;
+
+    private final boolean slashMonthFirst;
+
+    private DateParser(boolean slashMonthFirst) {
+        this.slashMonthFirst = slashMonthFirst;
+    }
+
+    // День/месяц выбирается, только если в выборке есть первое число больше 12 и нет второго больше 12
+    public static DateParser sniff(List<String[]> lines, int column) {
+        int dayFirstEvidence = 0;
+        int monthFirstEvidence = 0;
+        for (String[] line : lines) {
+            if (line.length <= column || line[column] == null) {
+                continue;
+            }
+            String value = line[column].trim();
+            int first = value.indexOf('/');
+            int second = first >= 0 ? value.indexOf('/', first + 1) : -1;
+            if (second < 0) {
+                continue;
+            }
+            if (digits(value, 0, first) > 12) {
+                dayFirstEvidence++;
+            }
+            if (digits(value, first + 1, second) > 12) {
+                monthFirstEvidence++;
+            }
+        }
+        return dayFirstEvidence > 0 && monthFirstEvidence == 0 ? DAY_FIRST : MONTH_FIRST;
+    }
+
+    public LocalDate parse(String value) {
+        int epochDay = parseEpochDay(value);
+        return epochDay != NULL_DAY ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    // NULL_DAY для пустой или нераспознанной строки
+    public int parseEpochDay(String value) {
+        if (value == null) {
+            return NULL_DAY;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int firstEnd = skipDigits(value, start, end);
+        if (firstEnd == start || firstEnd == end) {
+            return NULL_DAY;
+        }
+        char separator = value.charAt(firstEnd);
+        if (separator != '/' && separator != '.' && separator != '-') {
+            return NULL_DAY;
+        }
+        int secondEnd = skipDigits(value, firstEnd + 1, end);
+        if (secondEnd == firstEnd + 1 || secondEnd == end || value.charAt(secondEnd) != separator
+                || secondEnd - firstEnd - 1 > 2) {
+            return NULL_DAY;
+        }
+        int thirdEnd = skipDigits(value, secondEnd + 1, end);
+        if (thirdEnd != end || thirdEnd == secondEnd + 1) {
+            return NULL_DAY;
+        }
+
+        int first = digits(value, start, firstEnd);
+        int second = digits(value, firstEnd + 1, secondEnd);
+        int third = digits(value, secondEnd + 1, thirdEnd);
+        int firstLength = firstEnd - start;
+        int thirdLength = thirdEnd - secondEnd - 1;
+
+        if (firstLength == 4 && thirdLength <= 2 && separator == '-') {
+            return epochDay(first, second, third);
+        }
+        if (firstLength > 2 || thirdLength != 4) {
+            return NULL_DAY;
+        }
+        return switch (separator) {
+            case '.', '-' -> epochDay(third, second, first);
+            case '/' -> {
+                int preferred = slashMonthFirst ? epochDay(third, first, second) : epochDay(third, second, first);
+                yield preferred != NULL_DAY ? preferred
+                        : slashMonthFirst ? epochDay(third, second, first) : epochDay(third, first, second);
+            }
+            default -> NULL_DAY;
+        };
+    }
+
+    private static int skipDigits(String value, int from, int end) {
+        int i = from;
+        while (i < end && i - from < 4 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    // Та же формула, что в LocalDate.toEpochDay, для годов 0..9999
+    private static int epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NULL_DAY;
+        }
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) {
+                total--;
+            }
+        }
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
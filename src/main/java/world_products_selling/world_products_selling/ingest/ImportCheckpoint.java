@@ -0,0 +1,4 @@
+package world_products_selling.world_products_selling.ingest;
+
+public record ImportCheckpoint(String source, long rowsCommitted, boolean completed) {
+}
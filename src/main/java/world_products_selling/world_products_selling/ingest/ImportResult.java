@@ -0,0 +1,14 @@
+package world_products_selling.world_products_selling.ingest;
+
+public record ImportResult(
+        String source,
+        long rowsRead,
+        long rowsInserted,
+        long rowsRejected,
+        long rowsResumed,
+        long elapsedMillis
+) {
+    public double rowsPerSecond() {
+        return elapsedMillis > 0 ? rowsRead * 1000.0 / elapsedMillis : rowsRead;
+    }
+}
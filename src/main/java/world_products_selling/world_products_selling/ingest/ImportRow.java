@@ -0,0 +1,5 @@
+package world_products_selling.world_products_selling.ingest;
+
+// Продукт, загруженный из строки источника, и отпечаток этой строки (RowFingerprint)
+public record ImportRow(int productId, long fingerprint) {
+}
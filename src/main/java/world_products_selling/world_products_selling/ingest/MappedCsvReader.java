@@ -0,0 +1,210 @@
+package world_products_selling.world_products_selling.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Файл CSV, отображённый в память и разбираемый частями в нескольких потоках.
+// Файл делится на участки примерно по rangeSize байт, и граница каждого участка сдвигается
+// на начало следующей записи. Перевод строки внутри поля в кавычках записи не заканчивает,
+// поэтому для сдвига нужно знать, открыта ли кавычка в начале участка: это чётность числа кавычек
+// во всех предыдущих участках. Их считают параллельно, затем каждый участок разбирается отдельно.
+// Участки отображаются в память по одному, так что размер файла не ограничен 2 ГБ.
+// Поля - как у opencsv без escape-символа: кавычки вокруг поля, "" внутри - одна кавычка; строки UTF-8.
+final class MappedCsvReader implements Closeable {
+    private static final int WINDOW = 64 * 1024;
+
+    // Записи участка - от start включительно до end
+    record Range(long start, long end) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+
+    MappedCsvReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Участки записей после заголовка, по порядку в файле; пустые участки пропускаются
+    List<Range> split(long rangeSize, ExecutorService executor) throws IOException {
+        long first = recordEnd(0, false);
+        int count = (int) Math.max(1, (size - first + rangeSize - 1) / rangeSize);
+        long[] starts = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            starts[i] = first + i * rangeSize;
+        }
+        starts[count] = size;
+
+        List<Callable<Boolean>> parities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = starts[i];
+            long to = starts[i + 1];
+            parities.add(() -> oddQuotes(from, to));
+        }
+        List<Boolean> odd = invokeAll(executor, parities);
+
+        // Граница участка - начало первой записи не раньше starts[i]
+        List<Callable<Long>> bounds = new ArrayList<>(count);
+        boolean quoted = false;
+        for (int i = 0; i < count; i++) {
+            long from = starts[i];
+            boolean inQuotes = quoted;
+            bounds.add(() -> from == first ? first : recordEnd(from, inQuotes));
+            quoted ^= odd.get(i);
+        }
+        List<Long> boundaries = new ArrayList<>(invokeAll(executor, bounds));
+        boundaries.add(size);
+
+        List<Range> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (boundaries.get(i) < boundaries.get(i + 1)) {
+                ranges.add(new Range(boundaries.get(i), boundaries.get(i + 1)));
+            }
+        }
+        return ranges;
+    }
+
+    // Не больше limit первых записей после заголовка
+    List<String[]> head(int limit) throws IOException {
+        long start = recordEnd(0, false);
+        long end = start;
+        for (int i = 0; i < limit && end < size; i++) {
+            end = recordEnd(end, false);
+        }
+        List<String[]> records = new ArrayList<>(limit);
+        if (end > start) {
+            read(new Range(start, end), records::add);
+        }
+        return records;
+    }
+
+    // Передаёт потребителю записи участка по порядку
+    void read(Range range, Consumer<String[]> consumer) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range.start(), range.end() - range.start());
+        int limit = buffer.limit();
+        List<String> fields = new ArrayList<>(8);
+        byte[] scratch = new byte[256];
+        int position = 0;
+        while (position < limit) {
+            fields.clear();
+            boolean recordEnded = false;
+            while (!recordEnded) {
+                int length = 0;
+                if (position < limit && buffer.get(position) == '"') {
+                    position++;
+                    while (position < limit) {
+                        byte b = buffer.get(position++);
+                        if (b == '"') {
+                            if (position < limit && buffer.get(position) == '"') {
+                                position++;
+                            } else {
+                                break;
+                            }
+                        }
+                        if (length == scratch.length) {
+                            scratch = Arrays.copyOf(scratch, length * 2);
+                        }
+                        scratch[length++] = b;
+                    }
+                }
+                // Без кавычек поле идёт до запятой или конца строки; после закрывающей кавычки - то же
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b == ',' || b == '\n' || b == '\r') {
+                        break;
+                    }
+                    if (length == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, length * 2);
+                    }
+                    scratch[length++] = b;
+                    position++;
+                }
+                fields.add(new String(scratch, 0, length, StandardCharsets.UTF_8));
+                if (position >= limit) {
+                    recordEnded = true;
+                } else {
+                    byte separator = buffer.get(position++);
+                    if (separator == '\r' && position < limit && buffer.get(position) == '\n') {
+                        position++;
+                    }
+                    recordEnded = separator != ',';
+                }
+            }
+            consumer.accept(fields.toArray(new String[0]));
+        }
+    }
+
+    private boolean oddQuotes(long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int limit = buffer.limit();
+        int quotes = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '"') {
+                quotes++;
+            }
+        }
+        return (quotes & 1) != 0;
+    }
+
+    // Позиция после первого перевода строки вне кавычек начиная с from или конец файла
+    private long recordEnd(long from, boolean inQuotes) throws IOException {
+        long position = from;
+        while (position < size) {
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+            int limit = buffer.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position += limit;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Разбор " + file + " прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Ошибка разбора " + file, e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,13 @@
+package world_products_selling.world_products_selling.ingest;
+
+public record RefreshResult(
+        String source,
+        long rowsRead,
+        long rowsUnchanged,
+        long rowsInserted,
+        long rowsUpdated,
+        long rowsDeleted,
+        long rowsRejected,
+        long elapsedMillis
+) {
+}
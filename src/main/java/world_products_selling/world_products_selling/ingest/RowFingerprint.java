@@ -0,0 +1,85 @@
+package world_products_selling.world_products_selling.ingest;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.LocalDate;
+
+// 64-битный отпечаток восьми столбцов строки CSV (FNV-1a с перемешиванием в конце).
+// Считается по разобранным значениям Product, а не по тексту строки, поэтому строка файла
+// и сохранённый из неё продукт дают один отпечаток, а 11/20/2010 и 2010-11-20 - одну дату.
+// id и версия в отпечаток не входят.
+public final class RowFingerprint {
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    // Отделяет столбцы друг от друга и от null, так что ("ab", "c") и ("a", "bc") различаются
+    private static final char SEPARATOR = '\u001f';
+    private static final char NULL = '\u0000';
+
+    private RowFingerprint() {
+    }
+
+    public static long of(Product product) {
+        return hash(product, true, true);
+    }
+
+    // Ключ продажи - все столбцы, кроме количества и прибыли. Строки с одним ключом считаются
+    // одной продажей с исправленными числами, см. CsvImportService.refresh
+    public static long orderKey(Product product) {
+        return hash(product, true, false);
+    }
+
+    // Все столбцы, кроме даты: так находятся продукты, загруженные раньше без разобранной даты
+    public static long withoutOrderDate(Product product) {
+        return hash(product, false, true);
+    }
+
+    private static long hash(Product product, boolean orderDate, boolean measures) {
+        long hash = OFFSET;
+        hash = add(hash, product.getRegion());
+        hash = add(hash, product.getCountry());
+        hash = add(hash, product.getItemType());
+        hash = add(hash, product.getSalesChannel());
+        hash = add(hash, product.getOrderPriority());
+        if (orderDate) {
+            LocalDate date = product.getOrderDate();
+            hash = add(hash, date != null ? date.toEpochDay() : null);
+        }
+        if (measures) {
+            hash = add(hash, product.getUnitsSold() != null ? (long) product.getUnitsSold() : null);
+            hash = add(hash, product.getTotalProfit() != null ? Double.doubleToLongBits(product.getTotalProfit()) : null);
+        }
+        return mix(hash);
+    }
+
+    private static long add(long hash, String value) {
+        if (value == null) {
+            return add(add(hash, NULL), SEPARATOR);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = add(hash, value.charAt(i));
+        }
+        return add(hash, SEPARATOR);
+    }
+
+    private static long add(long hash, Long value) {
+        if (value == null) {
+            return add(add(hash, NULL), SEPARATOR);
+        }
+        for (int shift = 0; shift < Long.SIZE; shift += Character.SIZE) {
+            hash = add(hash, (char) (value >>> shift));
+        }
+        return add(hash, SEPARATOR);
+    }
+
+    private static long add(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * PRIME;
+        return (hash ^ (c >>> 8)) * PRIME;
+    }
+
+    // Финальное перемешивание MurmurHash3: близкие строки дают непохожие отпечатки
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,132 @@
+package world_products_selling.world_products_selling.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Записи из width чисел long, которые читаются упорядоченными по столбцам слева направо.
+// В памяти держится не больше runSize записей: заполненный буфер сортируется и сбрасывается
+// во временный файл, при чтении отсортированные участки сливаются. Так сравнение файла
+// продаж с загруженными строками не держит в памяти весь файл.
+final class SortedRecords implements Closeable {
+    private static final Comparator<long[]> ORDER = Arrays::compare;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    // Следующая запись или null в конце; возвращаемый массив переиспользуется
+    interface Cursor {
+        long[] next() throws IOException;
+    }
+
+    private final int width;
+    private final long[][] buffer;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<DataInputStream> open = new ArrayList<>();
+    private int count;
+    private long size;
+
+    SortedRecords(int width, int runSize) {
+        this.width = width;
+        this.buffer = new long[runSize][];
+    }
+
+    void add(long... record) throws IOException {
+        if (record.length != width) {
+            throw new IllegalArgumentException("Ожидается запись из " + width + " чисел");
+        }
+        if (count == buffer.length) {
+            spill();
+        }
+        buffer[count++] = record.clone();
+        size++;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // После открытия курсора записи не добавляются
+    Cursor open() throws IOException {
+        Arrays.sort(buffer, 0, count, ORDER);
+        if (runs.isEmpty()) {
+            return new Cursor() {
+                private int next;
+
+                @Override
+                public long[] next() {
+                    return next < count ? buffer[next++] : null;
+                }
+            };
+        }
+        spill();
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> ORDER.compare(a.record, b.record));
+        for (Path file : runs) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE));
+            open.add(in);
+            Run run = new Run(in, new long[width]);
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+        long[] current = new long[width];
+        return () -> {
+            Run run = queue.poll();
+            if (run == null) {
+                return null;
+            }
+            System.arraycopy(run.record, 0, current, 0, width);
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return current;
+        };
+    }
+
+    private void spill() throws IOException {
+        Arrays.sort(buffer, 0, count, ORDER);
+        Path file = Files.createTempFile("sorted-records", ".bin");
+        runs.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE))) {
+            for (int i = 0; i < count; i++) {
+                for (long value : buffer[i]) {
+                    out.writeLong(value);
+                }
+                buffer[i] = null;
+            }
+        }
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataInputStream in : open) {
+            in.close();
+        }
+        for (Path file : runs) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private record Run(DataInputStream in, long[] record) {
+        boolean advance() throws IOException {
+            try {
+                for (int i = 0; i < record.length; i++) {
+                    record[i] = in.readLong();
+                }
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package world_products_selling.world_products_selling.repository;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import world_products_selling.world_products_selling.columnar.ProductColumns;
+import world_products_selling.world_products_selling.columnar.ProductSnapshot;
+import world_products_selling.world_products_selling.columnar.SnapshotResult;
+import world_products_selling.world_products_selling.config.CsvDataLoader;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.ingest.DateParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.jar.JarEntry;
+
+// Хранилище профиля CsvEngine: CSV загружается при старте в ProductColumns, база данных не используется.
+// Изменения живут только в памяти процесса; writeSnapshot() сохраняет текущее состояние в app.snapshot.path,
+// и следующий запуск загружает его вместо разбора CSV, если CSV с тех пор не менялся.
+@Repository
+@Profile("CsvEngine")
+public class CsvProductRepository implements ProductStore {
+    private static final Logger log = LoggerFactory.getLogger(CsvProductRepository.class);
+    private static final int STREAM_CHUNK_SIZE = 1024;
+    private static final int DATE_SAMPLE_SIZE = 1000;
+
+    private final ProductColumns columns = new ProductColumns();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // null - снимки отключены
+    private final Path snapshot;
+    // id не переиспользуются даже после удаления последней строки, как и в последовательности БД
+    private int lastAssignedId;
+
+    public CsvProductRepository(@Value("${app.snapshot.path:}") String snapshotPath) {
+        this.snapshot = snapshotPath.isBlank() ? null : Path.of(snapshotPath).toAbsolutePath();
+    }
+
+    @PostConstruct
+    void loadFromClasspath() {
+        try {
+            if (snapshot != null && loadSnapshot()) {
+                return;
+            }
+            try (Reader reader = new InputStreamReader(openSource(), StandardCharsets.UTF_8)) {
+                load(reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream openSource() throws IOException {
+        InputStream is = CsvProductRepository.class.getResourceAsStream(CsvDataLoader.SOURCE);
+        if (is == null) {
+            throw new IOException("Не найден ресурс " + CsvDataLoader.SOURCE);
+        }
+        return is;
+    }
+
+    private static long sourceChecksum() throws IOException {
+        try (InputStream is = openSource()) {
+            return ProductSnapshot.checksum(is);
+        }
+    }
+
+    // Размер и отметка CSV без чтения содержимого: для ресурса в jar - CRC из записи архива,
+    // для файла на диске - время изменения. Если ни то ни другое недоступно, отметка UNKNOWN
+    // (как и размер или CRC, которых нет в записи jar), и снимок сверяется по контрольной сумме содержимого
+    private static ProductSnapshot.Source source(long checksum) throws IOException {
+        URL url = CsvProductRepository.class.getResource(CsvDataLoader.SOURCE);
+        if (url == null) {
+            throw new IOException("Не найден ресурс " + CsvDataLoader.SOURCE);
+        }
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection jar) {
+            JarEntry entry = jar.getJarEntry();
+            return new ProductSnapshot.Source(entry.getSize(), entry.getCrc(), checksum);
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                Path file = Path.of(url.toURI());
+                return new ProductSnapshot.Source(Files.size(file), Files.getLastModifiedTime(file).toMillis(), checksum);
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        return new ProductSnapshot.Source(connection.getContentLengthLong(), ProductSnapshot.UNKNOWN, checksum);
+    }
+
+    // false, если снимка нет или он устарел либо повреждён - тогда данные загружаются из CSV
+    private boolean loadSnapshot() {
+        if (!Files.exists(snapshot)) {
+            return false;
+        }
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            lastAssignedId = ProductSnapshot.read(snapshot, source(0), CsvProductRepository::sourceChecksum, columns);
+        } catch (IOException | RuntimeException e) {
+            if (columns.size() > 0) {
+                throw new IllegalStateException("Снимок " + snapshot + " загружен не полностью", e);
+            }
+            log.warn("CsvEngine: снимок {} не используется: {}", snapshot, e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("CsvEngine: загружено {} продуктов из снимка {} за {} мс",
+                columns.liveCount(), snapshot, (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    // Сохраняет текущие данные в снимок; чтение не блокируется, изменения ждут окончания записи
+    public SnapshotResult writeSnapshot() throws IOException {
+        if (snapshot == null) {
+            throw new IllegalStateException("Путь снимка не задан (app.snapshot.path)");
+        }
+        long started = System.nanoTime();
+        ProductSnapshot.Source source = source(sourceChecksum());
+        lock.readLock().lock();
+        try {
+            long bytes = ProductSnapshot.write(snapshot, source, lastAssignedId, columns);
+            SnapshotResult result = new SnapshotResult(snapshot.toString(), columns.liveCount(), bytes,
+                    (System.nanoTime() - started) / 1_000_000);
+            log.info("CsvEngine: снимок {} записан: {} продуктов, {} байт за {} мс",
+                    result.path(), result.rows(), result.bytes(), result.elapsedMillis());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void load(Reader reader) throws IOException {
+        long started = System.nanoTime();
+        int rejected = 0;
+        lock.writeLock().lock();
+        try (CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
+            List<String[]> sample = new ArrayList<>();
+            String[] line;
+            while (sample.size() < DATE_SAMPLE_SIZE && (line = csvReader.readNext()) != null) {
+                sample.add(line);
+            }
+            DateParser dateParser = DateParser.sniff(sample, CsvDataLoader.DATE_COLUMN);
+            Iterator<String[]> sampled = sample.iterator();
+
+            while ((line = sampled.hasNext() ? sampled.next() : csvReader.readNext()) != null) {
+                if (!appendLine(line, dateParser)) {
+                    rejected++;
+                }
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("CsvEngine: загружено {} продуктов, отклонено {} строк за {} мс",
+                columns.liveCount(), rejected, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Дата разбирается сразу в номер дня: DateParser.NULL_DAY совпадает с ProductColumns.NULL_INT
+    private boolean appendLine(String[] line, DateParser dateParser) {
+        if (line.length < 8) {
+            return false;
+        }
+        try {
+            columns.append(lastAssignedId + 1, line[0], line[1], line[2], line[3], line[4],
+                    dateParser.parseEpochDay(line[CsvDataLoader.DATE_COLUMN]),
+                    Integer.parseInt(line[6].trim()),
+                    Double.parseDouble(line[7].trim()));
+            lastAssignedId++;
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<Product> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>(columns.liveCount());
+            for (int row = 0; row < columns.size(); row++) {
+                if (!columns.isDeleted(row)) {
+                    products.add(columns.toProduct(row));
+                }
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Product> findById(Integer id) {
+        lock.readLock().lock();
+        try {
+            int row = columns.findRow(id);
+            return row >= 0 ? Optional.of(columns.toProduct(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        lock.readLock().lock();
+        try {
+            return columns.findRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Product> findAllById(Iterable<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>();
+            for (Integer id : ids) {
+                int row = columns.findRow(id);
+                if (row >= 0) {
+                    products.add(columns.toProduct(row));
+                }
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return columns.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public <S extends Product> S save(S product) {
+        lock.writeLock().lock();
+        try {
+            saveLocked(product);
+            return product;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public <S extends Product> List<S> saveAll(Iterable<S> products) {
+        List<S> saved = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (S product : products) {
+                saveLocked(product);
+                saved.add(product);
+            }
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Как и merge в JPA: запись с неизвестным id добавляется под новым id
+    private void saveLocked(Product product) {
+        int row = product.getId() != null ? columns.findRow(product.getId()) : -1;
+        if (row < 0) {
+            row = columns.append(++lastAssignedId, product);
+            product.setId(lastAssignedId);
+        } else {
+            columns.set(row, product);
+        }
+        product.setVersion(columns.version(row));
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        lock.writeLock().lock();
+        try {
+            int row = columns.findRow(id);
+            if (row >= 0) {
+                deleteRow(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void deleteRow(int row) {
+        columns.delete(row);
+        if (columns.deletedCount() > columns.liveCount()) {
+            columns.compact();
+        }
+    }
+
+    @Override
+    public Optional<Product> update(Product product) {
+        lock.writeLock().lock();
+        try {
+            int row = product.getId() != null ? columns.findRow(product.getId()) : -1;
+            if (row < 0 || (product.getVersion() != null && product.getVersion() != columns.version(row))) {
+                return Optional.empty();
+            }
+            Product before = columns.toProduct(row);
+            columns.set(row, product);
+            product.setVersion(columns.version(row));
+            return Optional.of(before);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Product> delete(Integer id, Integer version) {
+        lock.writeLock().lock();
+        try {
+            int row = columns.findRow(id);
+            if (row < 0 || (version != null && version != columns.version(row))) {
+                return Optional.empty();
+            }
+            Product before = columns.toProduct(row);
+            deleteRow(row);
+            return Optional.of(before);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Double findAverageProfitPerUnit() {
+        lock.readLock().lock();
+        try {
+            double sum = 0;
+            long count = 0;
+            for (int row = 0; row < columns.size(); row++) {
+                int units = columns.unitsSold(row);
+                double profit = columns.totalProfit(row);
+                if (columns.isDeleted(row) || units == ProductColumns.NULL_INT || units == 0 || Double.isNaN(profit)) {
+                    continue;
+                }
+                sum += profit / units;
+                count++;
+            }
+            return count > 0 ? sum / count : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Product> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit) {
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>(Math.min(max, STREAM_CHUNK_SIZE));
+            for (int row = columns.firstRowAfter(id); row < columns.size() && products.size() < max; row++) {
+                if (!columns.isDeleted(row)) {
+                    products.add(columns.toProduct(row));
+                }
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Индексов нет: строки после курсора проверяются подряд, первым - самое селективное условие
+    @Override
+    public List<Product> search(ProductFilter filter, List<ProductFilter.Criterion> order, Integer id, Limit limit) {
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        lock.readLock().lock();
+        try {
+            IntPredicate matcher = columns.matcher(filter, order);
+            List<Product> products = new ArrayList<>(Math.min(max, STREAM_CHUNK_SIZE));
+            for (int row = columns.firstRowAfter(id); row < columns.size() && products.size() < max; row++) {
+                if (!columns.isDeleted(row) && matcher.test(row)) {
+                    products.add(columns.toProduct(row));
+                }
+            }
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAll(Consumer<? super Product> consumer) {
+        streamChunks(lastId -> findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(STREAM_CHUNK_SIZE)), consumer);
+    }
+
+    @Override
+    public void stream(ProductFilter filter, List<ProductFilter.Criterion> order, Consumer<? super Product> consumer) {
+        streamChunks(lastId -> search(filter, order, lastId, Limit.of(STREAM_CHUNK_SIZE)), consumer);
+    }
+
+    // next возвращает порцию строк с id больше данного. Блокировка чтения берётся на каждую порцию,
+    // а не на весь обход, чтобы медленный потребитель не задерживал запись
+    private static void streamChunks(IntFunction<List<Product>> next, Consumer<? super Product> consumer) {
+        int lastId = 0;
+        List<Product> chunk;
+        do {
+            chunk = next.apply(lastId);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,64 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import world_products_selling.world_products_selling.ingest.ImportCheckpoint;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+@Repository
+@Profile("!CsvEngine")
+public class ImportCheckpointRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<ImportCheckpoint> findBySource(String source) {
+        return jdbcTemplate.query(
+                "SELECT source, rows_committed, completed FROM import_checkpoint WHERE source = ?",
+                (rs, rowNum) -> new ImportCheckpoint(
+                        rs.getString(1), rs.getLong(2), rs.getBoolean(3)),
+                source
+        ).stream().findFirst();
+    }
+
+    public void save(ImportCheckpoint checkpoint) {
+        jdbcTemplate.update(
+                "MERGE INTO import_checkpoint (source, rows_committed, completed, updated) "
+                        + "KEY (source) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+                checkpoint.source(), checkpoint.rowsCommitted(), checkpoint.completed());
+    }
+
+    public OptionalLong findChecksum(String source) {
+        return jdbcTemplate.query(
+                "SELECT source_checksum FROM import_checkpoint WHERE source = ? AND source_checksum IS NOT NULL",
+                (rs, rowNum) -> rs.getLong(1),
+                source
+        ).stream().mapToLong(Long::longValue).findFirst();
+    }
+
+    public void saveChecksum(String source, long checksum) {
+        jdbcTemplate.update("UPDATE import_checkpoint SET source_checksum = ? WHERE source = ?", checksum, source);
+    }
+
+    public boolean isAdopting(String source) {
+        return Boolean.TRUE.equals(jdbcTemplate.query(
+                "SELECT adopting FROM import_checkpoint WHERE source = ?",
+                (rs, rowNum) -> rs.getBoolean(1),
+                source
+        ).stream().findFirst().orElse(false));
+    }
+
+    // Без контрольной точки продукты уже загружены раньше, поэтому новая точка создаётся завершённой
+    public void saveAdopting(String source, boolean adopting) {
+        int updated = jdbcTemplate.update("UPDATE import_checkpoint SET adopting = ? WHERE source = ?", adopting, source);
+        if (updated == 0 && adopting) {
+            jdbcTemplate.update("INSERT INTO import_checkpoint (source, rows_committed, completed, adopting, updated) "
+                    + "VALUES (?, 0, TRUE, TRUE, CURRENT_TIMESTAMP)", source);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import world_products_selling.world_products_selling.ingest.ImportRow;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Отпечатки строк источника, из которых загружены продукты, см. CsvImportService.refresh
+@Repository
+@Profile("!CsvEngine")
+public class ImportRowRepository {
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportRowRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean existsBySource(String source) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM import_row WHERE source = ?)", Boolean.class, source));
+    }
+
+    // Строки по возрастанию отпечатка, при равных - по id продукта (индекс idx_import_row_fingerprint)
+    public void forEach(String source, Consumer<ImportRow> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT product_id, fingerprint FROM import_row WHERE source = ? ORDER BY fingerprint, product_id");
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setString(1, source);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new ImportRow(rs.getInt(1), rs.getLong(2))));
+    }
+
+    public void saveAll(String source, List<ImportRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "MERGE INTO import_row (product_id, source, fingerprint) KEY (product_id) VALUES (?, ?, ?)",
+                rows, rows.size(), (ps, row) -> {
+                    ps.setInt(1, row.productId());
+                    ps.setString(2, source);
+                    ps.setLong(3, row.fingerprint());
+                });
+    }
+
+    public void deleteAll(List<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM import_row WHERE product_id = ?",
+                productIds, productIds.size(), (ps, id) -> ps.setInt(1, id));
+    }
+}
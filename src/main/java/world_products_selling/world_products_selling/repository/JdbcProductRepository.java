@@ -0,0 +1,338 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Repository;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Хранилище профиля JdbcEngine: те же операции, что у ProductRepository, но без Hibernate -
+// без persistence context, снимков для dirty checking и прокси; строки разбираются прямо из ResultSet.
+// SQL-строки постоянны, поэтому H2 берёт разобранные команды из кэша сессии (QUERY_CACHE_SIZE).
+// Соединение берётся через DataSourceUtils, так что вызовы участвуют в транзакциях Spring.
+@Repository
+@Profile("JdbcEngine")
+public class JdbcProductRepository implements ProductStore {
+    private static final String COLUMNS = ProductRows.COLUMNS;
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM product";
+    private static final String SELECT_BY_ID = SELECT_ALL + " WHERE id = ?";
+    private static final String SELECT_BY_IDS = SELECT_ALL + " WHERE id = ANY(?)";
+    private static final String SELECT_PAGE = SELECT_ALL + " WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_ORDERED = SELECT_ALL + " ORDER BY id";
+    private static final String EXISTS = "SELECT 1 FROM product WHERE id = ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM product";
+    private static final String AVERAGE = "SELECT AVG(total_profit / units_sold) FROM product";
+    private static final String INSERT = "INSERT INTO product (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = ProductRows.SET_VALUES;
+    private static final String DELETE = "DELETE FROM product WHERE id = ?";
+    private static final String NEXT_ID_BLOCK = "SELECT NEXT VALUE FOR product_seq";
+
+    // Совпадает с allocationSize генератора Product.id: id выдаются блоками, как в pooled-lo
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final int BATCH_SIZE = 50;
+    private static final int FETCH_SIZE = 500;
+
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator exceptionTranslator;
+    private final ProductDictionary dictionary;
+    private final ProductRows rows;
+    private final Lock idLock = new ReentrantLock();
+    private int nextId;
+    private int idBlockEnd;
+
+    public JdbcProductRepository(DataSource dataSource, ProductDictionary dictionary) {
+        this.dataSource = dataSource;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.dictionary = dictionary;
+        this.rows = new ProductRows(dictionary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionCallback<T> {
+        T doInConnection(Connection connection) throws SQLException;
+    }
+
+    private <T> T execute(String sql, ConnectionCallback<T> callback) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return callback.doInConnection(connection);
+        } catch (SQLException e) {
+            DataAccessException translated = exceptionTranslator.translate("JdbcProductRepository", sql, e);
+            throw translated != null ? translated : new IllegalStateException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public List<Product> findAll() {
+        return execute(SELECT_ALL, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SELECT_ALL)) {
+                ps.setFetchSize(FETCH_SIZE);
+                return rows.readAll(ps);
+            }
+        });
+    }
+
+    @Override
+    public Optional<Product> findById(Integer id) {
+        return execute(SELECT_BY_ID, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID)) {
+                ps.setInt(1, id);
+                return rows.readOne(ps);
+            }
+        });
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return execute(EXISTS, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(EXISTS)) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<Product> findAllById(Iterable<Integer> ids) {
+        List<Integer> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        if (idList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return execute(SELECT_BY_IDS, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SELECT_BY_IDS)) {
+                Array array = connection.createArrayOf("INTEGER", idList.toArray());
+                ps.setArray(1, array);
+                return rows.readAll(ps);
+            }
+        });
+    }
+
+    @Override
+    public long count() {
+        return execute(COUNT, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(COUNT);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    // Запись без id вставляется под новым id, запись с id обновляется одним запросом вместо SELECT + UPDATE у merge.
+    // Строку, которой уже нет (например, её удалили параллельно), save не восстанавливает под новым id,
+    // а бросает исключение - как update(), который в этом случае возвращает пустой Optional
+    @Override
+    public <S extends Product> S save(S product) {
+        return execute(UPDATE, connection -> {
+            if (product.getId() != null) {
+                try (PreparedStatement ps = connection.prepareStatement(UPDATE)) {
+                    bindUpdate(ps, product);
+                    if (ps.executeUpdate() == 0) {
+                        throw missing(product);
+                    }
+                    return product;
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+                product.setId(nextId(connection));
+                product.setVersion(0);
+                bindInsert(ps, product);
+                ps.executeUpdate();
+            }
+            return product;
+        });
+    }
+
+    @Override
+    public <S extends Product> List<S> saveAll(Iterable<S> products) {
+        return execute(INSERT, connection -> {
+            List<S> saved = new ArrayList<>();
+            List<S> updates = new ArrayList<>();
+            List<S> inserts = new ArrayList<>();
+            for (S product : products) {
+                saved.add(product);
+                (product.getId() != null ? updates : inserts).add(product);
+            }
+
+            if (!updates.isEmpty()) {
+                try (PreparedStatement ps = connection.prepareStatement(UPDATE)) {
+                    int[] counts = executeBatches(ps, updates, true);
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            throw missing(updates.get(i));
+                        }
+                    }
+                }
+            }
+
+            if (!inserts.isEmpty()) {
+                try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+                    for (S product : inserts) {
+                        product.setId(nextId(connection));
+                        product.setVersion(0);
+                    }
+                    executeBatches(ps, inserts, false);
+                }
+            }
+            return saved;
+        });
+    }
+
+    private static IncorrectUpdateSemanticsDataAccessException missing(Product product) {
+        return new IncorrectUpdateSemanticsDataAccessException("Запись с id " + product.getId() + " не существует");
+    }
+
+    private int[] executeBatches(PreparedStatement ps, List<? extends Product> products, boolean update)
+            throws SQLException {
+        int[] counts = new int[products.size()];
+        int batchStart = 0;
+        for (int i = 0; i < products.size(); i++) {
+            if (update) {
+                bindUpdate(ps, products.get(i));
+            } else {
+                bindInsert(ps, products.get(i));
+            }
+            ps.addBatch();
+            if (i - batchStart + 1 == BATCH_SIZE || i == products.size() - 1) {
+                int[] batchCounts = ps.executeBatch();
+                System.arraycopy(batchCounts, 0, counts, batchStart, batchCounts.length);
+                batchStart = i + 1;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        execute(DELETE, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(DELETE)) {
+                ps.setInt(1, id);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public Optional<Product> update(Product product) {
+        return execute("UPDATE product", connection -> rows.update(connection, product));
+    }
+
+    @Override
+    public Optional<Product> delete(Integer id, Integer version) {
+        return execute("DELETE FROM product", connection -> rows.delete(connection, id, version));
+    }
+
+    @Override
+    public Double findAverageProfitPerUnit() {
+        return execute(AVERAGE, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(AVERAGE);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                double average = rs.getDouble(1);
+                return rs.wasNull() ? null : average;
+            }
+        });
+    }
+
+    @Override
+    public List<Product> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit) {
+        return execute(SELECT_PAGE, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SELECT_PAGE)) {
+                ps.setInt(1, id);
+                ps.setInt(2, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+                return rows.readAll(ps);
+            }
+        });
+    }
+
+    @Override
+    public void streamAll(Consumer<? super Product> consumer) {
+        execute(SELECT_ORDERED, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    SELECT_ORDERED, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(rows.mapRow(rs));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // Текст запроса зависит от набора и порядка условий; повторяющиеся варианты H2 берёт из кэша сессии
+    @Override
+    public List<Product> search(ProductFilter filter, List<ProductFilter.Criterion> order, Integer id, Limit limit) {
+        ProductSearchQuery search = ProductSearchQuery.of(COLUMNS, dictionary, filter, order, id,
+                limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+        return execute(search.sql(), connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(search.sql())) {
+                for (int i = 0; i < search.parameters().size(); i++) {
+                    ps.setObject(i + 1, search.parameters().get(i));
+                }
+                return rows.readAll(ps);
+            }
+        });
+    }
+
+    @Override
+    public void stream(ProductFilter filter, List<ProductFilter.Criterion> order, Consumer<? super Product> consumer) {
+        ProductSearchQuery search = ProductSearchQuery.of(COLUMNS, dictionary, filter, order, 0, Integer.MAX_VALUE);
+        execute(search.sql(), connection -> {
+            rows.stream(connection, search, FETCH_SIZE, consumer);
+            return null;
+        });
+    }
+
+    private int nextId(Connection connection) throws SQLException {
+        idLock.lock();
+        try {
+            if (nextId >= idBlockEnd) {
+                try (PreparedStatement ps = connection.prepareStatement(NEXT_ID_BLOCK);
+                     ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    nextId = rs.getInt(1);
+                    idBlockEnd = nextId + ID_BLOCK_SIZE;
+                }
+            }
+            return nextId++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private void bindInsert(PreparedStatement ps, Product product) throws SQLException {
+        ps.setInt(1, product.getId());
+        rows.bindValues(ps, product, 2);
+        ps.setInt(10, product.getVersion());
+    }
+
+    private void bindUpdate(PreparedStatement ps, Product product) throws SQLException {
+        rows.bindValues(ps, product, 1);
+        ps.setInt(9, product.getId());
+    }
+}
@@ -0,0 +1,304 @@
+package world_products_selling.world_products_selling.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.AttributeConverter;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import world_products_selling.world_products_selling.analytics.Dimension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Словарь значений строковых столбцов product: в строках таблицы хранятся целочисленные коды
+// (region_code и т.д.), сами строки - по одному разу в product_dictionary.
+// Словарь целиком держится в памяти, и decode всегда возвращает один и тот же экземпляр строки,
+// так что прочитанные продукты не копируют повторяющиеся значения.
+// Новое значение записывается в product_dictionary в транзакции вызывающего (DataSourceUtils),
+// код выбирает база - следующий за максимальным в столбце. Если тот же код или то же значение
+// одновременно добавил другой процесс с той же базой, вставка повторяется. До фиксации транзакции
+// новые коды видны только ей; при откате они забываются вместе со строкой словаря.
+// Таблица product, созданная до перехода на коды, переносится заранее (ProductDictionaryMigration).
+@Component
+@Profile("!CsvEngine")
+@DependsOn("productDictionaryMigration")
+public class ProductDictionary {
+    // Код значения, которого нет в словаре: в таблице такой код не встречается
+    public static final int UNKNOWN_CODE = -1;
+
+    static final Map<Dimension, String> COLUMNS = new EnumMap<>(Map.of(
+            Dimension.REGION, "region",
+            Dimension.COUNTRY, "country",
+            Dimension.ITEM_TYPE, "item_type",
+            Dimension.SALES_CHANNEL, "sales_channel",
+            Dimension.ORDER_PRIORITY, "order_priority"));
+
+    private static final String SELECT = "SELECT dimension, code, name FROM product_dictionary ORDER BY dimension, code";
+    private static final String SELECT_CODE = "SELECT code FROM product_dictionary WHERE dimension = ? AND name = ?";
+    private static final String SELECT_NAME = "SELECT name FROM product_dictionary WHERE dimension = ? AND code = ?";
+    private static final String INSERT = "INSERT INTO product_dictionary (dimension, code, name) "
+            + "SELECT ?, COALESCE(MAX(code) + 1, 0), ? FROM product_dictionary WHERE dimension = ?";
+    private static final String DUPLICATE_KEY = "23505";
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final DataSource dataSource;
+    private final Map<Dimension, Values> dictionaries = new EnumMap<>(Dimension.class);
+    private final Lock lock = new ReentrantLock();
+
+    public ProductDictionary(DataSource dataSource) {
+        this.dataSource = dataSource;
+        for (Dimension dimension : Dimension.values()) {
+            dictionaries.put(dimension, new Values());
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        new JdbcTemplate(dataSource).query(SELECT, rs -> {
+            Dimension dimension = dimension(rs.getString(1));
+            if (dimension != null) {
+                add(dictionaries.get(dimension), rs.getInt(2), rs.getString(3));
+            }
+        });
+    }
+
+    // Столбец кода в таблице product
+    public static String column(Dimension dimension) {
+        return COLUMNS.get(dimension) + "_code";
+    }
+
+    // Код значения; новое значение сначала добавляется в словарь. null кодируется как null
+    public Integer encode(Dimension dimension, String value) {
+        if (value == null) {
+            return null;
+        }
+        Values values = dictionaries.get(dimension);
+        Integer code = values.codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        Map<Dimension, Map<Integer, String>> pending = pending();
+        if (pending != null) {
+            for (Map.Entry<Integer, String> entry : pending.get(dimension).entrySet()) {
+                if (entry.getValue().equals(value)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                code = select(connection, SELECT_CODE, dimension, value);
+                if (code != null) {
+                    // Значение уже зафиксировал другой процесс
+                    add(values, code, value);
+                    return code;
+                }
+                try {
+                    insert(connection, dimension, value);
+                } catch (SQLException e) {
+                    if (!DUPLICATE_KEY.equals(e.getSQLState()) || attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    continue;
+                }
+                code = select(connection, SELECT_CODE, dimension, value);
+                if (pending != null) {
+                    pending.get(dimension).put(code, value);
+                } else {
+                    add(values, code, value);
+                }
+                return code;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось добавить значение в словарь " + COLUMNS.get(dimension), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    // Код уже известного значения или UNKNOWN_CODE; словарь не меняется
+    public int lookup(Dimension dimension, String value) {
+        Integer code = dictionaries.get(dimension).codes.get(value);
+        return code != null ? code : UNKNOWN_CODE;
+    }
+
+    public String decode(Dimension dimension, Integer code) {
+        if (code == null) {
+            return null;
+        }
+        Values values = dictionaries.get(dimension);
+        String[] names = values.names;
+        if (code >= 0 && code < names.length && names[code] != null) {
+            return names[code];
+        }
+        Map<Dimension, Map<Integer, String>> pending = pending();
+        String name = pending != null ? pending.get(dimension).get(code) : null;
+        if (name != null) {
+            return name;
+        }
+        // Код мог добавить другой процесс
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            name = select(connection, SELECT_NAME, dimension, code);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось прочитать словарь " + COLUMNS.get(dimension), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        if (name == null) {
+            throw new IllegalStateException("Код " + code + " отсутствует в словаре " + COLUMNS.get(dimension));
+        }
+        add(values, code, name);
+        return name;
+    }
+
+    // Коды, добавленные текущей транзакцией; попадают в словарь после её фиксации. null - транзакции нет,
+    // и вставка фиксируется сразу
+    private Map<Dimension, Map<Integer, String>> pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Dimension, Map<Integer, String>> pending =
+                (Map<Dimension, Map<Integer, String>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Dimension, Map<Integer, String>> added = new EnumMap<>(Dimension.class);
+            for (Dimension dimension : Dimension.values()) {
+                added.put(dimension, new HashMap<>());
+            }
+            TransactionSynchronizationManager.bindResource(this, added);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ProductDictionary.this);
+                    if (status == STATUS_COMMITTED) {
+                        added.forEach((dimension, codes) ->
+                                codes.forEach((code, name) -> add(dictionaries.get(dimension), code, name)));
+                    }
+                }
+            });
+            pending = added;
+        }
+        return pending;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T select(Connection connection, String sql, Dimension dimension, Object key)
+            throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, COLUMNS.get(dimension));
+            ps.setObject(2, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? (T) rs.getObject(1) : null;
+            }
+        }
+    }
+
+    private static void insert(Connection connection, Dimension dimension, String value) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+            ps.setString(1, COLUMNS.get(dimension));
+            ps.setString(2, value);
+            ps.setString(3, COLUMNS.get(dimension));
+            ps.executeUpdate();
+        }
+    }
+
+    private void add(Values values, int code, String name) {
+        lock.lock();
+        try {
+            values.add(code, name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Dimension dimension(String column) {
+        for (Map.Entry<Dimension, String> entry : COLUMNS.entrySet()) {
+            if (entry.getValue().equals(column)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    // Значения одного столбца: коды плотные, от 0. Массив заменяется целиком при добавлении,
+    // поэтому decode читает его без блокировки
+    private static final class Values {
+        final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        volatile String[] names = new String[0];
+
+        // Вызывается под lock
+        void add(int code, String name) {
+            String[] grown = Arrays.copyOf(names, Math.max(names.length, code + 1));
+            grown[code] = name;
+            names = grown;
+            codes.put(name, code);
+        }
+    }
+
+    // Преобразователи для полей Product; экземпляры создаёт Spring через контейнер бинов Hibernate
+    abstract static class DimensionConverter implements AttributeConverter<String, Integer> {
+        private final ProductDictionary dictionary;
+        private final Dimension dimension;
+
+        DimensionConverter(ProductDictionary dictionary, Dimension dimension) {
+            this.dictionary = dictionary;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String value) {
+            return dictionary.encode(dimension, value);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer code) {
+            return dictionary.decode(dimension, code);
+        }
+    }
+
+    public static class RegionConverter extends DimensionConverter {
+        public RegionConverter(ProductDictionary dictionary) {
+            super(dictionary, Dimension.REGION);
+        }
+    }
+
+    public static class CountryConverter extends DimensionConverter {
+        public CountryConverter(ProductDictionary dictionary) {
+            super(dictionary, Dimension.COUNTRY);
+        }
+    }
+
+    public static class ItemTypeConverter extends DimensionConverter {
+        public ItemTypeConverter(ProductDictionary dictionary) {
+            super(dictionary, Dimension.ITEM_TYPE);
+        }
+    }
+
+    public static class SalesChannelConverter extends DimensionConverter {
+        public SalesChannelConverter(ProductDictionary dictionary) {
+            super(dictionary, Dimension.SALES_CHANNEL);
+        }
+    }
+
+    public static class OrderPriorityConverter extends DimensionConverter {
+        public OrderPriorityConverter(ProductDictionary dictionary) {
+            super(dictionary, Dimension.ORDER_PRIORITY);
+        }
+    }
+}
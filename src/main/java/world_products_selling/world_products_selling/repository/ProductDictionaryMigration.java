@@ -0,0 +1,76 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.analytics.Dimension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+// Таблица product, созданная до перехода на коды, хранит значения строками: они переносятся
+// в словарь, строки получают коды, а строковые столбцы и их индексы удаляются.
+// Все столбцы переносятся вместе: каждое ALTER TABLE и UPDATE в H2 переписывает всю таблицу.
+// Повторный запуск после сбоя продолжает с того же места.
+// Выполняется до загрузки ProductDictionary, которая читает уже перенесённые значения.
+@Component
+@Profile("!CsvEngine")
+@DependsOnDatabaseInitialization
+class ProductDictionaryMigration implements InitializingBean {
+    private final JdbcTemplate jdbcTemplate;
+
+    ProductDictionaryMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT LOWER(COLUMN_NAME) FROM INFORMATION_SCHEMA.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'PRODUCT'", String.class));
+        List<Dimension> pending = new ArrayList<>();
+        for (Map.Entry<Dimension, String> entry : ProductDictionary.COLUMNS.entrySet()) {
+            if (existing.contains(entry.getValue())) {
+                pending.add(entry.getKey());
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        StringJoiner added = new StringJoiner(", ", "ALTER TABLE product ADD COLUMN (", ")").setEmptyValue("");
+        StringJoiner codes = new StringJoiner(", ", "UPDATE product p SET ", "");
+        StringJoiner dropped = new StringJoiner(", ", "ALTER TABLE product DROP COLUMN ", "");
+        for (Dimension dimension : pending) {
+            String text = ProductDictionary.COLUMNS.get(dimension);
+            String code = ProductDictionary.column(dimension);
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_product_" + text);
+            if (!existing.contains(code)) {
+                added.add(code + " INTEGER");
+            }
+            codes.add(code + " = (SELECT d.code FROM product_dictionary d "
+                    + "WHERE d.dimension = '" + text + "' AND d.name = p." + text + ")");
+            dropped.add(text);
+        }
+        if (added.length() > 0) {
+            jdbcTemplate.execute(added.toString());
+        }
+        for (Dimension dimension : pending) {
+            String text = ProductDictionary.COLUMNS.get(dimension);
+            jdbcTemplate.update("INSERT INTO product_dictionary (dimension, code, name) "
+                    + "SELECT ?, (SELECT COALESCE(MAX(code) + 1, 0) FROM product_dictionary WHERE dimension = ?) "
+                    + "+ ROW_NUMBER() OVER (ORDER BY v.name) - 1, v.name "
+                    + "FROM (SELECT DISTINCT " + text + " AS name FROM product WHERE " + text + " IS NOT NULL) v "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM product_dictionary d WHERE d.dimension = ? AND d.name = v.name)",
+                    text, text, text);
+        }
+        jdbcTemplate.update(codes.toString());
+        jdbcTemplate.execute(dropped.toString());
+    }
+}
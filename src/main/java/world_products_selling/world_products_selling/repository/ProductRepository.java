@@ -1,12 +1,47 @@
 package world_products_selling.world_products_selling.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import world_products_selling.world_products_selling.entity.Product;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, ProductRepositoryCustom, ProductStore {
+    // CRUD-методы объявлены в обоих родительских интерфейсах; повторное объявление
+    // снимает неоднозначность при вызове через ProductRepository
+
+    @Override
+    List<Product> findAll();
+
+    @Override
+    Optional<Product> findById(Integer id);
+
+    @Override
+    boolean existsById(Integer id);
+
+    @Override
+    List<Product> findAllById(Iterable<Integer> ids);
+
+    @Override
+    long count();
+
+    @Override
+    <S extends Product> S save(S product);
+
+    @Override
+    <S extends Product> List<S> saveAll(Iterable<S> products);
+
+    @Override
+    void deleteById(Integer id);
+
+    @Override
     @Query("SELECT AVG(p.totalProfit / p.unitsSold) FROM Product p")
     Double findAverageProfitPerUnit();
-}
\ No newline at end of file
+
+    @Override
+    List<Product> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+}
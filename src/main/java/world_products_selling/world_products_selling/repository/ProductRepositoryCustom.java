@@ -0,0 +1,28 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.data.domain.Limit;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface ProductRepositoryCustom {
+
+    // Обходит таблицу по возрастанию id через forward-only курсор,
+    // не накапливая сущности в persistence context.
+    void streamAll(Consumer<? super Product> consumer);
+
+    // Условные UPDATE и DELETE из ProductRows на соединении текущей сессии: merge и remove
+    // потребовали бы сначала загрузить сущность
+    Optional<Product> update(Product product);
+
+    Optional<Product> delete(Integer id, Integer version);
+
+    // Нативный запрос из ProductSearchQuery: порядок условий и подсказка индекса задаются явно
+    List<Product> search(ProductFilter filter, List<ProductFilter.Criterion> order, Integer id, Limit limit);
+
+    // Тот же запрос без ограничения, читается через JDBC-курсор на соединении сессии без создания сущностей
+    void stream(ProductFilter filter, List<ProductFilter.Criterion> order, Consumer<? super Product> consumer);
+}
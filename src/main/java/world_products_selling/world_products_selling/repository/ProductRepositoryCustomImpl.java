@@ -0,0 +1,77 @@
+package world_products_selling.world_products_selling.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    private static final int FETCH_SIZE = 500;
+    private static final ProductFilter ALL = new ProductFilter(null, null, null, null, null, null, null, null);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ProductDictionary dictionary;
+    private final ProductRows rows;
+
+    public ProductRepositoryCustomImpl(ProductDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.rows = new ProductRows(dictionary);
+    }
+
+    // Через ProductRows.stream, как и stream(): курсор Hibernate на встроенной H2 без LAZY_QUERY_EXECUTION
+    // получил бы первую строку только после того, как H2 соберёт весь результат
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<? super Product> consumer) {
+        ProductSearchQuery search = ProductSearchQuery.of(ProductRows.COLUMNS, dictionary, ALL, List.of(),
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+        entityManager.unwrap(Session.class).doWork(connection -> rows.stream(connection, search, FETCH_SIZE, consumer));
+    }
+
+    @Override
+    @Transactional
+    public Optional<Product> update(Product product) {
+        Session session = entityManager.unwrap(Session.class);
+        session.flush();
+        return session.doReturningWork(connection -> rows.update(connection, product));
+    }
+
+    @Override
+    @Transactional
+    public Optional<Product> delete(Integer id, Integer version) {
+        Session session = entityManager.unwrap(Session.class);
+        session.flush();
+        return session.doReturningWork(connection -> rows.delete(connection, id, version));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<Product> search(ProductFilter filter, List<ProductFilter.Criterion> order, Integer id, Limit limit) {
+        ProductSearchQuery search = ProductSearchQuery.of(ProductRows.COLUMNS, dictionary, filter, order, id,
+                limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+        Query query = entityManager.createNativeQuery(search.sql(), Product.class);
+        for (int i = 0; i < search.parameters().size(); i++) {
+            query.setParameter(i + 1, search.parameters().get(i));
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void stream(ProductFilter filter, List<ProductFilter.Criterion> order, Consumer<? super Product> consumer) {
+        ProductSearchQuery search = ProductSearchQuery.of(ProductRows.COLUMNS, dictionary, filter, order, 0,
+                Integer.MAX_VALUE);
+        entityManager.unwrap(Session.class).doWork(connection -> rows.stream(connection, search, FETCH_SIZE, consumer));
+    }
+}
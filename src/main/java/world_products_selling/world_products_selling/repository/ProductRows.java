@@ -0,0 +1,181 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import world_products_selling.world_products_selling.analytics.Dimension;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Разбор и привязка строк таблицы product через JDBC: используется JdbcProductRepository
+// и теми операциями ProductRepositoryCustomImpl, которые выполняются на соединении сессии Hibernate.
+// Строковые поля Product хранятся кодами: при записи они кодируются, при чтении раскодируются через ProductDictionary.
+final class ProductRows {
+    static final String COLUMNS = "id, region_code, country_code, item_type_code, sales_channel_code, "
+            + "order_priority_code, order_date, units_sold, total_profit, version";
+
+    // OLD TABLE возвращает прежнее состояние изменённых строк, так что условное изменение
+    // и чтение строки для событий и агрегатов - один запрос
+    static final String SET_VALUES = "UPDATE product SET region_code = ?, country_code = ?, item_type_code = ?, "
+            + "sales_channel_code = ?, order_priority_code = ?, order_date = ?, units_sold = ?, total_profit = ?, "
+            + "version = version + 1 WHERE id = ?";
+    private static final String UPDATE = "SELECT " + COLUMNS + " FROM OLD TABLE (" + SET_VALUES + ")";
+    private static final String UPDATE_VERSION = "SELECT " + COLUMNS + " FROM OLD TABLE (" + SET_VALUES + " AND version = ?)";
+    private static final String DELETE = "SELECT " + COLUMNS + " FROM OLD TABLE (DELETE FROM product WHERE id = ?)";
+    private static final String DELETE_VERSION =
+            "SELECT " + COLUMNS + " FROM OLD TABLE (DELETE FROM product WHERE id = ? AND version = ?)";
+
+    private static final String LAZY_ON = "SET LAZY_QUERY_EXECUTION TRUE";
+    private static final String LAZY_OFF = "SET LAZY_QUERY_EXECUTION FALSE";
+
+    private final ProductDictionary dictionary;
+
+    ProductRows(ProductDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    Optional<Product> update(Connection connection, Product product) throws SQLException {
+        String sql = product.getVersion() != null ? UPDATE_VERSION : UPDATE;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            bindValues(ps, product, 1);
+            ps.setInt(9, product.getId());
+            if (product.getVersion() != null) {
+                ps.setInt(10, product.getVersion());
+            }
+            Optional<Product> before = readOne(ps);
+            before.ifPresent(row -> product.setVersion(row.getVersion() + 1));
+            return before;
+        }
+    }
+
+    Optional<Product> delete(Connection connection, Integer id, Integer version) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(version != null ? DELETE_VERSION : DELETE)) {
+            ps.setInt(1, id);
+            if (version != null) {
+                ps.setInt(2, version);
+            }
+            return readOne(ps);
+        }
+    }
+
+    List<Product> readAll(PreparedStatement ps) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                products.add(mapRow(rs));
+            }
+        }
+        return products;
+    }
+
+    // Строки запроса передаются потребителю по одной, forward-only курсором с заданным fetchSize.
+    // Встроенная H2 по умолчанию сначала собирает весь результат (сверх MAX_MEMORY_ROWS - во временный файл);
+    // на время обхода сессия переключается в LAZY_QUERY_EXECUTION, и строки читаются по мере обхода индекса.
+    // Если режим уже включён (JdbcEngine задаёт его в URL), он не трогается: соединение вернётся в пул таким же
+    void stream(Connection connection, ProductSearchQuery search, int fetchSize, Consumer<? super Product> consumer)
+            throws SQLException {
+        boolean wasLazy = isLazy(connection);
+        try (Statement session = connection.createStatement()) {
+            if (!wasLazy) {
+                session.execute(LAZY_ON);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    search.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                for (int i = 0; i < search.parameters().size(); i++) {
+                    ps.setObject(i + 1, search.parameters().get(i));
+                }
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapRow(rs));
+                    }
+                }
+            } finally {
+                if (!wasLazy) {
+                    session.execute(LAZY_OFF);
+                }
+            }
+        }
+    }
+
+    // В H2 2.x режима нет в INFORMATION_SCHEMA.SETTINGS, поэтому он читается у сессии встроенной базы;
+    // для удалённой сессии считается выключенным
+    static boolean isLazy(Connection connection) throws SQLException {
+        return connection.isWrapperFor(JdbcConnection.class)
+                && connection.unwrap(JdbcConnection.class).getSession() instanceof SessionLocal session
+                && session.isLazyQueryExecution();
+    }
+
+    Optional<Product> readOne(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? Optional.of(mapRow(rs)) : Optional.empty();
+        }
+    }
+
+    // Столбцы в порядке COLUMNS
+    Product mapRow(ResultSet rs) throws SQLException {
+        Product product = new Product();
+        product.setId(rs.getInt(1));
+        product.setRegion(decode(rs, 2, Dimension.REGION));
+        product.setCountry(decode(rs, 3, Dimension.COUNTRY));
+        product.setItemType(decode(rs, 4, Dimension.ITEM_TYPE));
+        product.setSalesChannel(decode(rs, 5, Dimension.SALES_CHANNEL));
+        product.setOrderPriority(decode(rs, 6, Dimension.ORDER_PRIORITY));
+        product.setOrderDate(rs.getObject(7, LocalDate.class));
+        int unitsSold = rs.getInt(8);
+        product.setUnitsSold(rs.wasNull() ? null : unitsSold);
+        double totalProfit = rs.getDouble(9);
+        product.setTotalProfit(rs.wasNull() ? null : totalProfit);
+        product.setVersion(rs.getInt(10));
+        return product;
+    }
+
+    // Все столбцы, кроме id и version, начиная с параметра first
+    void bindValues(PreparedStatement ps, Product product, int first) throws SQLException {
+        bindCode(ps, first, Dimension.REGION, product.getRegion());
+        bindCode(ps, first + 1, Dimension.COUNTRY, product.getCountry());
+        bindCode(ps, first + 2, Dimension.ITEM_TYPE, product.getItemType());
+        bindCode(ps, first + 3, Dimension.SALES_CHANNEL, product.getSalesChannel());
+        bindCode(ps, first + 4, Dimension.ORDER_PRIORITY, product.getOrderPriority());
+        if (product.getOrderDate() != null) {
+            ps.setDate(first + 5, Date.valueOf(product.getOrderDate()));
+        } else {
+            ps.setNull(first + 5, Types.DATE);
+        }
+        if (product.getUnitsSold() != null) {
+            ps.setInt(first + 6, product.getUnitsSold());
+        } else {
+            ps.setNull(first + 6, Types.INTEGER);
+        }
+        if (product.getTotalProfit() != null) {
+            ps.setDouble(first + 7, product.getTotalProfit());
+        } else {
+            ps.setNull(first + 7, Types.DOUBLE);
+        }
+    }
+
+    private String decode(ResultSet rs, int column, Dimension dimension) throws SQLException {
+        int code = rs.getInt(column);
+        return rs.wasNull() ? null : dictionary.decode(dimension, code);
+    }
+
+    private void bindCode(PreparedStatement ps, int parameter, Dimension dimension, String value) throws SQLException {
+        Integer code = dictionary.encode(dimension, value);
+        if (code != null) {
+            ps.setInt(parameter, code);
+        } else {
+            ps.setNull(parameter, Types.INTEGER);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package world_products_selling.world_products_selling.repository;
+
+import world_products_selling.world_products_selling.analytics.Dimension;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.dto.ProductFilter.Criterion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// SQL поиска по ProductFilter для JpaEngine и JdbcEngine. Условия записываются в переданном порядке;
+// если первое из них - равенство по строковому полю, H2 получает подсказку USE INDEX по индексу его кода.
+// Строковые значения сравниваются по кодам из ProductDictionary; значение, которого нет в словаре,
+// получает UNKNOWN_CODE и не совпадает ни с одной строкой.
+// Эти индексы заканчиваются на id, так что строки одного значения уже лежат по возрастанию id
+// и страница после курсора читается из индекса без сортировки.
+record ProductSearchQuery(String sql, List<Object> parameters) {
+
+    static ProductSearchQuery of(String columns, ProductDictionary dictionary, ProductFilter filter,
+                                 List<Criterion> order, int afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM product");
+        if (!order.isEmpty() && index(order.get(0)) != null) {
+            sql.append(" USE INDEX (").append(index(order.get(0))).append(')');
+        }
+        sql.append(" WHERE ");
+        List<Object> parameters = new ArrayList<>(order.size() + 2);
+        for (Criterion criterion : order) {
+            sql.append(condition(criterion)).append(" AND ");
+            Dimension dimension = criterion.dimension();
+            parameters.add(dimension != null
+                    ? dictionary.lookup(dimension, (String) filter.value(criterion))
+                    : filter.value(criterion));
+        }
+        sql.append("id > ? ORDER BY id FETCH FIRST ? ROWS ONLY");
+        parameters.add(afterId);
+        parameters.add(limit);
+        return new ProductSearchQuery(sql.toString(), parameters);
+    }
+
+    private static String condition(Criterion criterion) {
+        return switch (criterion) {
+            case REGION, COUNTRY, ITEM_TYPE, SALES_CHANNEL, ORDER_PRIORITY ->
+                    ProductDictionary.column(criterion.dimension()) + " = ?";
+            case FROM -> "order_date >= ?";
+            case TO -> "order_date <= ?";
+            case MIN_PROFIT -> "total_profit >= ?";
+        };
+    }
+
+    // Для диапазонов индекс выбирает сам H2: оценка их селективности у нас приблизительная
+    private static String index(Criterion criterion) {
+        Dimension dimension = criterion.dimension();
+        return dimension != null ? "idx_product_" + ProductDictionary.column(dimension) : null;
+    }
+}
@@ -0,0 +1,51 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.springframework.data.domain.Limit;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Хранилище продуктов, с которым работает ProductService.
+// Для JpaEngine его реализует ProductRepository (Spring Data), для CsvEngine - CsvProductRepository,
+// для JdbcEngine - JdbcProductRepository.
+public interface ProductStore {
+
+    List<Product> findAll();
+
+    Optional<Product> findById(Integer id);
+
+    boolean existsById(Integer id);
+
+    List<Product> findAllById(Iterable<Integer> ids);
+
+    long count();
+
+    <S extends Product> S save(S product);
+
+    <S extends Product> List<S> saveAll(Iterable<S> products);
+
+    void deleteById(Integer id);
+
+    // Условные изменения одним запросом. Версия проверяется, если задана (null - без проверки);
+    // строка получает версию на 1 больше. Возвращается прежнее состояние строки или пустой Optional,
+    // если строки с таким id и версией нет. update записывает новую версию в product.
+    Optional<Product> update(Product product);
+
+    Optional<Product> delete(Integer id, Integer version);
+
+    Double findAverageProfitPerUnit();
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    void streamAll(Consumer<? super Product> consumer);
+
+    // Строки, подходящие под все условия filter, с id больше данного, по возрастанию id.
+    // order - заданные условия в порядке проверки, самое селективное первым.
+    List<Product> search(ProductFilter filter, List<ProductFilter.Criterion> order, Integer id, Limit limit);
+
+    // Все строки, подходящие под filter, по возрастанию id; передаются потребителю по мере чтения
+    void stream(ProductFilter filter, List<ProductFilter.Criterion> order, Consumer<? super Product> consumer);
+}
@@ -0,0 +1,99 @@
+package world_products_selling.world_products_selling.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Запоминает успешные проверки логина и пароля, чтобы HTTP Basic не запускал BCrypt на каждый запрос.
+// Ключ - HMAC-SHA256 от пары логин/пароль на случайном ключе процесса: пароль в памяти не хранится,
+// а подобрать его по содержимому кэша быстрее, чем по BCrypt-хэшу, нельзя.
+// Неудачные попытки не кэшируются и всегда проходят полную проверку.
+// Время проверки пишется в таймер app.authentication с тегом result: cached, verified или rejected.
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+    private final ExpiringCache<String, Authentication> authentications;
+    private final SecretKeySpec key;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
+
+    public CachingAuthenticationProvider(
+            AuthenticationProvider delegate, Duration ttl, int maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.authentications = new ExpiringCache<>(ttl, maxSize);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.cachedTimer = timer(meterRegistry, "cached");
+        this.verifiedTimer = timer(meterRegistry, "verified");
+        this.rejectedTimer = timer(meterRegistry, "rejected");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        long started = System.nanoTime();
+        Timer timer = rejectedTimer;
+        try {
+            if (!(authentication.getCredentials() instanceof String password)) {
+                Authentication result = delegate.authenticate(authentication);
+                timer = verifiedTimer;
+                return result;
+            }
+
+            String cacheKey = cacheKey(authentication.getName(), password);
+            Authentication cached = authentications.get(cacheKey);
+            if (cached != null) {
+                timer = cachedTimer;
+                return cached;
+            }
+
+            Authentication result = delegate.authenticate(authentication);
+            if (result != null && result.isAuthenticated()) {
+                authentications.put(cacheKey, result);
+            }
+            timer = verifiedTimer;
+            return result;
+        } finally {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    public void clear() {
+        authentications.clear();
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("app.authentication").tag("result", result).register(meterRegistry);
+    }
+
+    private String cacheKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 недоступен", e);
+        }
+    }
+}
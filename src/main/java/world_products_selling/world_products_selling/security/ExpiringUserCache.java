@@ -0,0 +1,38 @@
+package world_products_selling.world_products_selling.security;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+
+import java.time.Duration;
+
+// Кэш UserDetails для DaoAuthenticationProvider. Хранятся и выдаются копии:
+// ProviderManager стирает пароль у принципала, и без копий кэш лишился бы хэша пароля.
+public class ExpiringUserCache implements UserCache {
+    private final ExpiringCache<String, UserDetails> users;
+
+    public ExpiringUserCache(Duration ttl, int maxSize) {
+        this.users = new ExpiringCache<>(ttl, maxSize);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails user = users.get(username);
+        return user != null ? User.withUserDetails(user).build() : null;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        users.put(user.getUsername(), User.withUserDetails(user).build());
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        users.remove(username);
+    }
+
+    public void clear() {
+        users.clear();
+    }
+}
@@ -0,0 +1,47 @@
+package world_products_selling.world_products_selling.security;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import world_products_selling.world_products_selling.entity.Person;
+
+// JPA-слушатель Person: любое изменение пользователя сбрасывает кэши аутентификации.
+// Hibernate получает его из контекста Spring при создании EntityManagerFactory, поэтому кэши
+// запрашиваются лениво: провайдер аутентификации сам зависит от PersonRepository.
+// Кэши сбрасываются сразу и ещё раз после фиксации, чтобы запрос, прочитавший
+// старую строку до коммита, не вернул её в кэш.
+@Component
+public class PersonCacheEvictionListener {
+    private final ObjectProvider<CachingAuthenticationProvider> authenticationProvider;
+    private final ObjectProvider<ExpiringUserCache> userCache;
+
+    public PersonCacheEvictionListener(ObjectProvider<CachingAuthenticationProvider> authenticationProvider,
+                                       ObjectProvider<ExpiringUserCache> userCache) {
+        this.authenticationProvider = authenticationProvider;
+        this.userCache = userCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onPersonChanged(Person person) {
+        evict();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict();
+                }
+            });
+        }
+    }
+
+    private void evict() {
+        authenticationProvider.ifAvailable(CachingAuthenticationProvider::clear);
+        userCache.ifAvailable(ExpiringUserCache::clear);
+    }
+}
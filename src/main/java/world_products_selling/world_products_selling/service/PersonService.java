@@ -1,5 +1,7 @@
 package world_products_selling.world_products_selling.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -8,6 +10,7 @@ import world_products_selling.world_products_selling.entity.Person;
 import world_products_selling.world_products_selling.repository.PersonRepository;
 
 public class PersonService implements UserDetailsService {
+    private static final Logger log = LoggerFactory.getLogger(PersonService.class);
 
     private final PersonRepository personRepository;
 
@@ -17,20 +20,13 @@ public class PersonService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        System.out.println("=== loadUserByUsername вызван для: " + username);
-
         Person person = personRepository.findByEmailIgnoreCase(username);
 
         if (person == null) {
-            System.out.println("=== Пользователь НЕ НАЙДЕН: " + username);
+            log.debug("Пользователь не найден: {}", username);
             throw new UsernameNotFoundException("Пользователь не найден: " + username);
         }
 
-        System.out.println("=== Пользователь найден: " + person.getEmail());
-        System.out.println("=== Роль: " + person.getRole());
-        System.out.println("=== Enabled: " + person.isEnabled());
-        System.out.println("=== Password starts with: " + person.getPassword().substring(0, 10));
-
         return User.builder()
                 .username(person.getEmail())
                 .password(person.getPassword())
@@ -0,0 +1,91 @@
+package world_products_selling.world_products_selling.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Кэш чтений ProductService: строки по id и страницы запросов по всей таблице.
+// Ключ содержит версию из ProductVersions, прочитанную до обращения к хранилищу, поэтому после
+// фиксации изменения через ProductService прежние записи просто перестают находиться,
+// а результат, прочитанный одновременно с изменением, остаётся под старой версией.
+// Строки уходят по LRU или ttl; страницы прежних версий удаляются, как только версия таблицы сменилась.
+// Кэш страниц ограничен суммарным числом строк в них; запрос без limit не кэшируется -
+// копия всей таблицы на каждую версию исчерпала бы память.
+// ttl ограничивает время, в течение которого не видны изменения в обход ProductService.
+// Хранятся и выдаются копии: вызывающий код может менять полученные объекты.
+// Размер 0 отключает соответствующий кэш; по умолчанию кэш выключен, включается профилем ProductCache.
+@Component
+public class ProductCache {
+    private final ProductVersions productVersions;
+    private final ExpiringCache<RowKey, Product> rows;
+    private final ExpiringCache<QueryKey, List<Product>> queries;
+    // Версия таблицы, под которой лежат страницы в queries
+    private final AtomicLong queriesVersion = new AtomicLong(-1);
+
+    public ProductCache(
+            ProductVersions productVersions,
+            @Value("${app.product-cache.ttl:10m}") Duration ttl,
+            @Value("${app.product-cache.max-rows:0}") int maxRows,
+            @Value("${app.product-cache.max-query-rows:0}") long maxQueryRows
+    ) {
+        this.productVersions = productVersions;
+        this.rows = new ExpiringCache<>(ttl, maxRows);
+        this.queries = new ExpiringCache<>(ttl, maxQueryRows, List::size);
+    }
+
+    // Отсутствие строки не кэшируется
+    public Optional<Product> getOne(Integer id, Supplier<Optional<Product>> loader) {
+        if (!rows.isEnabled()) {
+            return loader.get();
+        }
+        RowKey key = new RowKey(id, productVersions.rowVersion(id));
+        Product cached = rows.get(key);
+        if (cached != null) {
+            return Optional.of(ProductService.copyOf(cached));
+        }
+        Optional<Product> loaded = loader.get();
+        loaded.ifPresent(product -> rows.put(key, ProductService.copyOf(product)));
+        return loaded;
+    }
+
+    // afterId и limit описывают страницу; для запроса всей таблицы - 0 и null
+    public List<Product> getList(int afterId, Integer limit, Supplier<List<Product>> loader) {
+        if (!queries.isEnabled() || limit == null) {
+            return loader.get();
+        }
+        long version = productVersions.tableVersion();
+        if (queriesVersion.getAndAccumulate(version, Math::max) < version) {
+            queries.clear();
+        }
+        QueryKey key = new QueryKey(afterId, limit, version);
+        List<Product> cached = queries.get(key);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+        List<Product> loaded = loader.get();
+        queries.put(key, copyOf(loaded));
+        return loaded;
+    }
+
+    public Map<String, ExpiringCache.Stats> stats() {
+        return Map.of("rows", rows.stats(), "queries", queries.stats());
+    }
+
+    private static List<Product> copyOf(List<Product> products) {
+        return products.stream().map(ProductService::copyOf).toList();
+    }
+
+    private record RowKey(Integer id, long version) {
+    }
+
+    private record QueryKey(int afterId, Integer limit, long version) {
+    }
+}
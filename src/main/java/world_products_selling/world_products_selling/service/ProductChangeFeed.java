@@ -0,0 +1,188 @@
+package world_products_selling.world_products_selling.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Лента зафиксированных изменений продуктов для GET /api/products/changes (SSE).
+// Каждое изменение получает следующий номер и попадает в общее кольцо последних capacity изменений.
+// У подписчика есть только позиция в кольце и виртуальный поток, который отправляет ему изменения
+// по порядку. Медленный клиент не задерживает запись и не копит свой буфер: если кольцо его обогнало,
+// он получает событие resync с текущим номером, должен перечитать данные и продолжить с этого номера.
+// Id события - "<запуск>-<номер>": клиент, переподключаясь с Last-Event-ID, получает изменения после него,
+// а после перезапуска сервера или слишком старого номера - resync.
+@Component
+public class ProductChangeFeed {
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeFeed.class);
+    private static final int BATCH_SIZE = 256;
+
+    public record Change(long sequence, String type, Integer id, Product product) {
+    }
+
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final Change[] ring;
+    private final Duration heartbeat;
+    private final Lock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    // Номер последнего изменения, 0 - изменений не было
+    private long head;
+
+    public ProductChangeFeed(
+            @Value("${app.change-feed.capacity:10000}") int capacity,
+            @Value("${app.change-feed.heartbeat:15s}") Duration heartbeat) {
+        this.ring = new Change[capacity];
+        this.heartbeat = heartbeat;
+    }
+
+    // После ProductVersions: клиент, получивший изменение, уже видит новый ETag
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.lock();
+        try {
+            long sequence = ++head;
+            ring[(int) (sequence % ring.length)] = toChange(sequence, event);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long head() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Изменения с номера from по порядку, не больше max; пустой список - новых нет,
+    // null - изменение from уже вытеснено из кольца
+    List<Change> read(long from, int max) {
+        lock.lock();
+        try {
+            if (from <= head - ring.length) {
+                return null;
+            }
+            List<Change> changes = new ArrayList<>((int) Math.min(max, Math.max(0, head - from + 1)));
+            for (long sequence = from; sequence <= head && changes.size() < max; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // false, если за timeout изменение from так и не появилось
+    boolean await(long from, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (head < from) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Номер, с которого начнётся отправка; 0 - клиенту сначала нужен resync.
+    // Без lastEventId подписчик получает только изменения после подписки
+    long startAfter(String lastEventId) {
+        long current = head();
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return current + 1;
+        }
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || !lastEventId.substring(0, dash).equals(instance)) {
+            return 0;
+        }
+        try {
+            long sequence = Long.parseLong(lastEventId.substring(dash + 1));
+            return sequence <= current && sequence >= current - ring.length ? sequence + 1 : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Запускает отправку изменений в emitter; поток завершается, когда соединение закрыто
+    public void subscribe(SseEmitter emitter, String lastEventId) {
+        long start = startAfter(lastEventId);
+        Thread sender = Thread.ofVirtual().name("change-feed").unstarted(() -> send(emitter, start));
+        emitter.onCompletion(sender::interrupt);
+        emitter.onTimeout(sender::interrupt);
+        emitter.onError(error -> sender.interrupt());
+        sender.start();
+    }
+
+    private void send(SseEmitter emitter, long start) {
+        long next = start;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Change> changes = next > 0 ? read(next, BATCH_SIZE) : null;
+                if (changes == null) {
+                    long current = head();
+                    emitter.send(SseEmitter.event()
+                            .id(eventId(current))
+                            .name("resync")
+                            .data(new Change(current, "resync", null, null), MediaType.APPLICATION_JSON));
+                    next = current + 1;
+                } else if (changes.isEmpty()) {
+                    if (!await(next, heartbeat)) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                } else {
+                    for (Change change : changes) {
+                        emitter.send(SseEmitter.event()
+                                .id(eventId(change.sequence()))
+                                .name(change.type())
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                    next = changes.get(changes.size() - 1).sequence() + 1;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            // Клиент закрыл соединение или emitter уже завершён
+            log.debug("Подписчик ленты изменений отключился: {}", e.toString());
+        }
+        emitter.complete();
+    }
+
+    String eventId(long sequence) {
+        return instance + "-" + sequence;
+    }
+
+    private static Change toChange(long sequence, ProductChangedEvent event) {
+        if (event.before() == null) {
+            return new Change(sequence, "insert", event.after().getId(), event.after());
+        }
+        if (event.after() == null) {
+            return new Change(sequence, "delete", event.before().getId(), null);
+        }
+        return new Change(sequence, "update", event.after().getId(), event.after());
+    }
+}
@@ -0,0 +1,7 @@
+package world_products_selling.world_products_selling.service;
+
+import world_products_selling.world_products_selling.entity.Product;
+
+// Изменение одной записи: before == null при добавлении, after == null при удалении
+public record ProductChangedEvent(Product before, Product after) {
+}
@@ -1,52 +1,332 @@
 package world_products_selling.world_products_selling.service;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.analytics.Bucket;
+import world_products_selling.world_products_selling.analytics.Dimension;
+import world_products_selling.world_products_selling.analytics.Metric;
+import world_products_selling.world_products_selling.analytics.ProductCube;
+import world_products_selling.world_products_selling.analytics.ProductTimeSeries;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitAverage;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitQuantiles;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.dto.ProductPage;
 import world_products_selling.world_products_selling.entity.Product;
-import world_products_selling.world_products_selling.repository.ProductRepository;
+import world_products_selling.world_products_selling.repository.ProductStore;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Время каждого публичного метода пишется в таймер app.product.service с тегами method и exception
 @Service
+@Timed("app.product.service")
 public class ProductService {
-    private final ProductRepository productRepository;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10_000;
+    // Принятая доля строк, проходящих условие-диапазон: точной статистики по ним нет
+    static final double RANGE_SELECTIVITY = 1.0 / 3;
+    static final List<Double> DEFAULT_PERCENTILES = List.of(50.0, 95.0, 99.0);
+    static final int DEFAULT_TOP_SIZE = 10;
+    static final int MAX_TOP_SIZE = 1000;
+
+    private final ProductStore productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProfitPerUnitAverage profitPerUnitAverage;
+    private final ProfitPerUnitQuantiles profitPerUnitQuantiles;
+    private final ProductCube productCube;
+    private final ProductTimeSeries productTimeSeries;
+    private final ProductCache productCache;
 
     public ProductService(
-            ProductRepository productRepository
+            ProductStore productRepository,
+            ApplicationEventPublisher eventPublisher,
+            ProfitPerUnitAverage profitPerUnitAverage,
+            ProfitPerUnitQuantiles profitPerUnitQuantiles,
+            ProductCube productCube,
+            ProductTimeSeries productTimeSeries,
+            ProductCache productCache
     ) {
         this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.profitPerUnitAverage = profitPerUnitAverage;
+        this.profitPerUnitQuantiles = profitPerUnitQuantiles;
+        this.productCube = productCube;
+        this.productTimeSeries = productTimeSeries;
+        this.productCache = productCache;
     }
 
     public Iterable<Product> getAll() {
-        return productRepository.findAll();
+        return productCache.getList(0, null, productRepository::findAll);
+    }
+
+    public ProductPage getPage(String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        int afterId = decodeCursor(cursor);
+        List<Product> items = productCache.getList(afterId, pageSize + 1,
+                () -> productRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1)));
+        return toPage(items, pageSize);
+    }
+
+    // Условия проверяются от самого селективного: для равенств доля подходящих строк
+    // известна точно из ProductCube, для диапазонов принимается RANGE_SELECTIVITY
+    public ProductPage search(ProductFilter filter, String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        validate(filter);
+        List<Product> items = productRepository.search(filter, order(filter), decodeCursor(cursor), Limit.of(pageSize + 1));
+        return toPage(items, pageSize);
+    }
+
+    // Все подходящие строки по возрастанию id, без страниц и кэша: потребитель получает их по мере чтения
+    public void export(ProductFilter filter, Consumer<? super Product> consumer) {
+        validate(filter);
+        productRepository.stream(filter, order(filter), consumer);
+    }
+
+    // Вызывается и до начала потоковой выгрузки, пока ответ ещё можно заменить ошибкой
+    public void validate(ProductFilter filter) {
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to()))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Дата from не может быть позже to");
+    }
+
+    private List<ProductFilter.Criterion> order(ProductFilter filter) {
+        return filter.criteria().stream()
+                .sorted(Comparator.comparingDouble(criterion -> selectivity(filter, criterion)))
+                .toList();
+    }
+
+    private double selectivity(ProductFilter filter, ProductFilter.Criterion criterion) {
+        Dimension dimension = criterion.dimension();
+        long total = productCube.count();
+        if (dimension == null || total == 0)
+            return RANGE_SELECTIVITY;
+        return (double) productCube.count(dimension, (String) filter.value(criterion)) / total;
+    }
+
+    private static int pageSize(Integer size) {
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        return pageSize;
+    }
+
+    private static ProductPage toPage(List<Product> items, int pageSize) {
+        if (items.size() <= pageSize)
+            return new ProductPage(items, null);
+
+        items = items.subList(0, pageSize);
+        return new ProductPage(items, encodeCursor(items.get(pageSize - 1).getId()));
+    }
+
+    public void streamAll(Consumer<? super Product> consumer) {
+        productRepository.streamAll(consumer);
     }
 
     public Product getOne(Integer id) {
-        if (!productRepository.existsById(id)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует");
-        }
-        return productRepository.findById(id).orElse(null);
+        return productCache.getOne(id, () -> productRepository.findById(id))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует"));
     }
 
     public Product add(Product product) {
         if (product.getId() != null)
             if (productRepository.existsById(product.getId()))
                 throw new ResponseStatusException(HttpStatus.CONFLICT, "Запись создана ранее");
-        return productRepository.save(product);
+        // Новая запись всегда получает id из последовательности и начальную версию
+        product.setId(null);
+        product.setVersion(null);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(null, saved));
+        return saved;
     }
 
+    // Вставки группируются Hibernate в JDBC-пакеты (hibernate.jdbc.batch_size),
+    // id выдаются блоками из product_seq без обращения к базе на каждую запись
+    @Transactional
+    public List<Product> addAll(List<Product> products) {
+        if (products.size() > MAX_BATCH_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "В пакете не может быть больше " + MAX_BATCH_SIZE + " записей");
+
+        List<Integer> ids = products.stream().map(Product::getId).filter(Objects::nonNull).toList();
+        if (!ids.isEmpty() && !productRepository.findAllById(ids).isEmpty())
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Запись создана ранее");
+
+        products.forEach(product -> {
+            product.setId(null);
+            product.setVersion(null);
+        });
+        List<Product> saved = productRepository.saveAll(products);
+        saved.forEach(product -> eventPublisher.publishEvent(new ProductChangedEvent(null, product)));
+        return saved;
+    }
+
+    // Запись меняется одним условным запросом; если передана version, запись должна иметь ту же версию,
+    // иначе её уже изменил кто-то другой и ответ - 409. Без version запись перезаписывается.
     public Product update(Product product) {
-        if (!productRepository.existsById(product.getId()))
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует");
-        return productRepository.save(product);
+        if (product.getId() == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не указан id записи");
+        Product before = productRepository.update(product)
+                .orElseThrow(() -> notFoundOrConflict(product.getId()));
+        eventPublisher.publishEvent(new ProductChangedEvent(before, product));
+        return product;
+    }
+
+    // Частичное изменение: changes применяются к копии текущей записи. Если changes не задают version,
+    // проверяется прочитанная, так что изменения, сделанные между чтением и записью, не теряются.
+    public Product patch(Integer id, Consumer<Product> changes) {
+        Product current = getOne(id);
+        Product patched = copyOf(current);
+        patched.setVersion(null);
+        changes.accept(patched);
+        patched.setId(id);
+        if (patched.getVersion() == null)
+            patched.setVersion(current.getVersion());
+        return update(patched);
+    }
+
+    public void delete(Integer id, Integer version) {
+        Product before = productRepository.delete(id, version)
+                .orElseThrow(() -> notFoundOrConflict(id));
+        eventPublisher.publishEvent(new ProductChangedEvent(before, null));
     }
 
-    public void delete(Integer id) {
-        if (!productRepository.existsById(id))
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует");
-        productRepository.deleteById(id);
+    // Дополнительный запрос только при неудаче: условное изменение не различает эти случаи
+    private ResponseStatusException notFoundOrConflict(Integer id) {
+        if (productRepository.existsById(id))
+            return new ResponseStatusException(HttpStatus.CONFLICT, "Запись изменена другим запросом");
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует");
     }
 
+    public Map<String, ExpiringCache.Stats> getCacheStats() {
+        return productCache.stats();
+    }
+
+    // Поддерживается при каждом изменении, поэтому не требует прохода по таблице
     public double findAverageProfitPerUnit(){
-        return productRepository.findAverageProfitPerUnit();
+        return profitPerUnitAverage.average();
+    }
+
+    // Приближённые перцентили прибыли на единицу из скетча; без percentiles - p50, p95 и p99
+    public Map<String, Object> getProfitPerUnitPercentiles(List<Double> percentiles) {
+        List<Double> requested = percentiles != null && !percentiles.isEmpty() ? percentiles : DEFAULT_PERCENTILES;
+        for (double percentile : requested) {
+            if (!(percentile >= 0 && percentile <= 100))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Перцентиль должен быть от 0 до 100: " + percentile);
+        }
+        return profitPerUnitQuantiles.percentiles(requested);
+    }
+
+    // k значений by с наибольшим metric; metric - поле (сумма по нему), count или выражение вида avg(unitsSold)
+    public List<Map<String, Object>> getTop(String by, String metric, Integer k) {
+        int limit = k != null ? k : DEFAULT_TOP_SIZE;
+        if (limit < 1 || limit > MAX_TOP_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k должно быть от 1 до " + MAX_TOP_SIZE);
+        return productCube.top(parseDimension(by), parseRankingMetric(metric), limit);
+    }
+
+    // Число различных значений поля count, по всей таблице или по группам groupBy
+    public List<Map<String, Object>> getDistinctCounts(String count, String groupBy) {
+        Dimension counted = parseDimension(count);
+        Dimension dimension = groupBy != null && !groupBy.isBlank() ? parseDimension(groupBy) : null;
+        return productCube.distinct(counted, dimension);
+    }
+
+    // Без groupBy возвращается одна строка по всей таблице, без metrics - только count
+    public List<Map<String, Object>> getStats(List<String> groupBy, List<String> metrics) {
+        List<Dimension> dimensions = new ArrayList<>();
+        for (String field : groupBy != null ? groupBy : List.<String>of()) {
+            Dimension dimension = parseDimension(field);
+            if (!dimensions.contains(dimension))
+                dimensions.add(dimension);
+        }
+        return productCube.query(dimensions, parseMetrics(metrics, List.of("count")));
+    }
+
+    // Без metrics возвращаются count и суммы unitsSold и totalProfit
+    public List<Map<String, Object>> getTimeSeries(
+            String bucket, LocalDate from, LocalDate to, String groupBy, List<String> metrics) {
+        Bucket parsed = Bucket.fromName(bucket.trim());
+        if (parsed == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Неизвестный интервал " + bucket);
+        if (from != null && to != null && from.isAfter(to))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Дата from не может быть позже to");
+
+        Dimension dimension = groupBy != null && !groupBy.isBlank() ? parseDimension(groupBy) : null;
+        return productTimeSeries.query(parsed, from, to, dimension,
+                parseMetrics(metrics, List.of("count", "sum(unitsSold)", "sum(totalProfit)")));
+    }
+
+    private static Dimension parseDimension(String field) {
+        Dimension dimension = Dimension.fromField(field.trim());
+        if (dimension == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Группировка по полю " + field + " не поддерживается");
+        return dimension;
+    }
+
+    private static Metric parseRankingMetric(String metric) {
+        for (Metric.Measure measure : Metric.Measure.values()) {
+            if (measure.field().equals(metric.trim()))
+                return new Metric(Metric.Function.SUM, measure);
+        }
+        Metric parsed = Metric.parse(metric);
+        if (parsed == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Неизвестный показатель " + metric);
+        return parsed;
+    }
+
+    private static List<Metric> parseMetrics(List<String> metrics, List<String> defaults) {
+        List<Metric> parsed = new ArrayList<>();
+        for (String expression : metrics != null && !metrics.isEmpty() ? metrics : defaults) {
+            Metric metric = Metric.parse(expression);
+            if (metric == null)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Неизвестный показатель " + expression);
+            parsed.add(metric);
+        }
+        return parsed;
+    }
+
+    static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setRegion(product.getRegion());
+        copy.setCountry(product.getCountry());
+        copy.setItemType(product.getItemType());
+        copy.setSalesChannel(product.getSalesChannel());
+        copy.setOrderPriority(product.getOrderPriority());
+        copy.setOrderDate(product.getOrderDate());
+        copy.setUnitsSold(product.getUnitsSold());
+        copy.setTotalProfit(product.getTotalProfit());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+
+    static String encodeCursor(Integer lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastId.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank())
+            return 0;
+        try {
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+        }
     }
 }
@@ -0,0 +1,58 @@
+package world_products_selling.world_products_selling.service;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Версии данных продуктов для ETag и ProductCache: общая - для ответов по всей таблице, построчная - для GET /{id}.
+// Общая версия растёт после фиксации каждого изменения из ProductChangedEvent, строка запоминает
+// общую версию своего последнего изменения; строки, не менявшиеся с запуска, имеют версию 0.
+// Запись из map не удаляется и после удаления строки, иначе её версия вернулась бы к 0.
+// Изменения в обход ProductService (например, прямо в базе) версии не меняют.
+@Component
+public class ProductVersions {
+    // Отличает версии разных запусков: после перезапуска прежние ETag не совпадут
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong tableVersion = new AtomicLong();
+    private final Map<Integer, Long> rowVersions = new ConcurrentHashMap<>();
+
+    // После агрегатов: иначе новый ETag мог бы достаться ещё не обновлённому среднему
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        long version = tableVersion.incrementAndGet();
+        if (event.before() != null) {
+            rowVersions.put(event.before().getId(), version);
+        }
+        if (event.after() != null) {
+            rowVersions.put(event.after().getId(), version);
+        }
+    }
+
+    // Версию нужно взять до чтения данных: тогда ответ может оказаться новее своего ETag, но не старее
+    public long tableVersion() {
+        return tableVersion.get();
+    }
+
+    public long rowVersion(Integer id) {
+        return rowVersions.getOrDefault(id, 0L);
+    }
+
+    public String tableTag() {
+        return tag(tableVersion());
+    }
+
+    public String rowTag(Integer id) {
+        return tag(rowVersion(id));
+    }
+
+    private String tag(long version) {
+        return "\"" + instance + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,33 @@
+-- Строковые столбцы хранятся кодами из product_dictionary
+CREATE TABLE IF NOT EXISTS product (
+    id                  INTEGER PRIMARY KEY,
+    region_code         INTEGER,
+    country_code        INTEGER,
+    item_type_code      INTEGER,
+    sales_channel_code  INTEGER,
+    order_priority_code INTEGER,
+    order_date          DATE,
+    units_sold          INTEGER,
+    total_profit        DOUBLE PRECISION,
+    version             INTEGER DEFAULT 0 NOT NULL
+);
+
+-- Таблица могла быть создана раньше без версии и со строковыми столбцами;
+-- их значения переносит в словарь ProductDictionary при запуске
+ALTER TABLE product ADD COLUMN IF NOT EXISTS version INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS region_code INTEGER;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS country_code INTEGER;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS item_type_code INTEGER;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS sales_channel_code INTEGER;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS order_priority_code INTEGER;
+
+-- Те же индексы, что объявлены в Product для JpaEngine
+CREATE INDEX IF NOT EXISTS idx_product_region_code ON product (region_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_country_code ON product (country_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_item_type_code ON product (item_type_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_sales_channel_code ON product (sales_channel_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_order_priority_code ON product (order_priority_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_order_date ON product (order_date);
+CREATE INDEX IF NOT EXISTS idx_product_total_profit ON product (total_profit);
+
+CREATE SEQUENCE IF NOT EXISTS product_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,31 @@
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    source         VARCHAR(255) PRIMARY KEY,
+    rows_committed BIGINT       NOT NULL,
+    completed      BOOLEAN      NOT NULL,
+    updated        TIMESTAMP
+);
+
+-- CRC32C содержимого источника после последней полной загрузки или обновления, см. CsvSource.refreshIfChanged
+ALTER TABLE import_checkpoint ADD COLUMN IF NOT EXISTS source_checksum BIGINT;
+
+-- Идёт сопоставление с источником продуктов, загруженных до появления import_row, см. CsvImportService.refresh
+ALTER TABLE import_checkpoint ADD COLUMN IF NOT EXISTS adopting BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- Словарь значений строковых столбцов product, см. ProductDictionary
+CREATE TABLE IF NOT EXISTS product_dictionary (
+    dimension VARCHAR(32)  NOT NULL,
+    code      INTEGER      NOT NULL,
+    name      VARCHAR(255) NOT NULL,
+    PRIMARY KEY (dimension, code),
+    UNIQUE (dimension, name)
+);
+
+-- Отпечаток строки источника для каждого загруженного из него продукта, см. CsvImportService.refresh
+CREATE TABLE IF NOT EXISTS import_row (
+    product_id  INTEGER      PRIMARY KEY,
+    source      VARCHAR(255) NOT NULL,
+    fingerprint BIGINT       NOT NULL
+);
+
+DROP INDEX IF EXISTS idx_import_row_source;
+CREATE INDEX IF NOT EXISTS idx_import_row_fingerprint ON import_row (source, fingerprint, product_id);
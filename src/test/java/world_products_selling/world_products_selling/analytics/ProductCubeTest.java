@@ -0,0 +1,105 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCubeTest {
+    private static final Metric SUM_PROFIT = Metric.parse("sum(totalProfit)");
+    private static final Metric AVG_UNITS = Metric.parse("avg(unitsSold)");
+
+    private ProductCube cube;
+    private Product icelandFood;
+
+    @BeforeEach
+    void setUp() {
+        cube = new ProductCube();
+        icelandFood = product("Europe", "Iceland", "Baby Food", 100, 1000.0);
+        cube.apply(null, icelandFood);
+        cube.apply(null, product("Europe", "Russia", "Meat", 10, 500.0));
+        cube.apply(null, product("Asia", "China", "Meat", 4, null));
+    }
+
+    @Test
+    void query_ShouldGroupByRequestedDimensionsInOrder() {
+        List<Map<String, Object>> rows = cube.query(List.of(Dimension.ITEM_TYPE, Dimension.REGION),
+                List.of(SUM_PROFIT, AVG_UNITS, Metric.COUNT));
+
+        assertEquals(3, rows.size());
+        assertEquals(List.of("itemType", "region", "sum(totalProfit)", "avg(unitsSold)", "count"),
+                List.copyOf(rows.get(0).keySet()));
+        assertEquals("Asia", rows.get(0).get("region"));
+        assertNull(rows.get(0).get("sum(totalProfit)"));
+        assertEquals(4.0, rows.get(0).get("avg(unitsSold)"));
+        assertEquals(500.0, rows.get(2).get("sum(totalProfit)"));
+    }
+
+    @Test
+    void query_WithoutGroupBy_ShouldReturnTotals() {
+        List<Map<String, Object>> rows = cube.query(List.of(), List.of(Metric.parse("sum(unitsSold)"), Metric.COUNT));
+
+        assertEquals(List.of(Map.of("sum(unitsSold)", 114L, "count", 3L)), rows);
+    }
+
+    @Test
+    void distinct_ShouldCountValuesPerGroup() {
+        cube.apply(null, product("Europe", "Iceland", "Meat", 1, 1.0));
+
+        List<Map<String, Object>> rows = cube.distinct(Dimension.COUNTRY, Dimension.ITEM_TYPE);
+
+        assertEquals(List.of(
+                Map.of("itemType", "Baby Food", "distinct(country)", 1L),
+                Map.of("itemType", "Meat", "distinct(country)", 3L)), rows);
+        assertEquals(List.of(Map.of("distinct(region)", 2L)), cube.distinct(Dimension.REGION, null));
+    }
+
+    @Test
+    void top_ShouldReturnKLargestGroupsAndFollowUpdates() {
+        cube.apply(null, product("Asia", "Japan", "Snacks", 1, 700.0));
+
+        assertEquals(List.of(
+                Map.of("country", "Iceland", "sum(totalProfit)", 1000.0),
+                Map.of("country", "Japan", "sum(totalProfit)", 700.0)), cube.top(Dimension.COUNTRY, SUM_PROFIT, 2));
+
+        cube.apply(icelandFood, product("Europe", "Russia", "Meat", 100, 1000.0));
+
+        assertEquals(List.of(
+                Map.of("country", "Russia", "sum(totalProfit)", 1500.0),
+                Map.of("country", "Japan", "sum(totalProfit)", 700.0)), cube.top(Dimension.COUNTRY, SUM_PROFIT, 2));
+        assertEquals("China", cube.top(Dimension.COUNTRY, SUM_PROFIT, 10).get(2).get("country"));
+    }
+
+    @Test
+    void apply_WhenRowUpdatedAndDeleted_ShouldMoveAndDropCells() {
+        Product moved = product("Asia", "Japan", "Baby Food", 50, 250.0);
+        cube.apply(icelandFood, moved);
+
+        List<Map<String, Object>> rows = cube.query(List.of(Dimension.REGION), List.of(SUM_PROFIT, Metric.COUNT));
+        assertEquals(Map.of("region", "Asia", "sum(totalProfit)", 250.0, "count", 2L), rows.get(0));
+        assertEquals(Map.of("region", "Europe", "sum(totalProfit)", 500.0, "count", 1L), rows.get(1));
+
+        cube.apply(moved, null);
+
+        assertEquals(List.of("China", "Russia"),
+                cube.query(List.of(Dimension.COUNTRY, Dimension.ITEM_TYPE), List.of(Metric.COUNT)).stream()
+                        .map(row -> row.get("country"))
+                        .toList());
+    }
+
+    private static Product product(String region, String country, String itemType, Integer unitsSold, Double totalProfit) {
+        Product product = new Product();
+        product.setRegion(region);
+        product.setCountry(country);
+        product.setItemType(itemType);
+        product.setSalesChannel("Online");
+        product.setOrderPriority("H");
+        product.setUnitsSold(unitsSold);
+        product.setTotalProfit(totalProfit);
+        return product;
+    }
+}
@@ -0,0 +1,71 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductTimeSeriesTest {
+    private static final Metric SUM_PROFIT = Metric.parse("sum(totalProfit)");
+
+    private ProductTimeSeries series;
+    private Product lateMarch;
+
+    @BeforeEach
+    void setUp() {
+        series = new ProductTimeSeries();
+        series.apply(null, product("Europe", "2014-01-10", 100.0));
+        series.apply(null, product("Asia", "2014-02-20", 10.0));
+        lateMarch = product("Europe", "2014-03-31", 1.0);
+        series.apply(null, lateMarch);
+        series.apply(null, product("Europe", "2015-06-01", 1000.0));
+        series.apply(null, product("Asia", null, 5000.0));
+    }
+
+    @Test
+    void query_ShouldReturnNonEmptyBucketsInOrder() {
+        List<Map<String, Object>> rows = series.query(Bucket.QUARTER, null, null, null, List.of(SUM_PROFIT, Metric.COUNT));
+
+        assertEquals(List.of(
+                Map.of("bucket", LocalDate.of(2014, 1, 1), "sum(totalProfit)", 111.0, "count", 3L),
+                Map.of("bucket", LocalDate.of(2015, 4, 1), "sum(totalProfit)", 1000.0, "count", 1L)), rows);
+    }
+
+    @Test
+    void query_ShouldCutEdgeBucketsToRange() {
+        List<Map<String, Object>> rows = series.query(Bucket.YEAR,
+                LocalDate.of(2014, 2, 1), LocalDate.of(2015, 5, 31), Dimension.REGION, List.of(SUM_PROFIT));
+
+        assertEquals(List.of(
+                Map.of("bucket", LocalDate.of(2014, 1, 1), "region", "Asia", "sum(totalProfit)", 10.0),
+                Map.of("bucket", LocalDate.of(2014, 1, 1), "region", "Europe", "sum(totalProfit)", 1.0)), rows);
+    }
+
+    @Test
+    void apply_WhenRowMovedAndDeleted_ShouldUpdateBuckets() {
+        Product moved = product("Europe", "2014-04-01", 1.0);
+        series.apply(lateMarch, moved);
+
+        assertEquals(List.of(LocalDate.of(2014, 1, 1), LocalDate.of(2014, 2, 1), LocalDate.of(2014, 4, 1), LocalDate.of(2015, 6, 1)),
+                series.query(Bucket.MONTH, null, null, null, List.of(Metric.COUNT)).stream().map(row -> row.get("bucket")).toList());
+
+        series.apply(moved, null);
+
+        assertEquals(2, series.query(Bucket.DAY, LocalDate.of(2014, 1, 1), LocalDate.of(2014, 12, 31), null,
+                List.of(Metric.COUNT)).size());
+    }
+
+    private static Product product(String region, String orderDate, Double totalProfit) {
+        Product product = new Product();
+        product.setRegion(region);
+        product.setOrderDate(orderDate != null ? LocalDate.parse(orderDate) : null);
+        product.setUnitsSold(1);
+        product.setTotalProfit(totalProfit);
+        return product;
+    }
+}
@@ -0,0 +1,61 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import world_products_selling.world_products_selling.entity.Product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfitPerUnitAverageTest {
+    private ProfitPerUnitAverage average;
+
+    @BeforeEach
+    void setUp() {
+        average = new ProfitPerUnitAverage();
+    }
+
+    @Test
+    void apply_ShouldAverageRatiosAndSkipRowsWithoutUnits() {
+        average.apply(null, product(100, 1000.0));
+        average.apply(null, product(10, 500.0));
+        average.apply(null, product(0, 1.0));
+        average.apply(null, product(null, 1.0));
+        average.apply(null, product(5, null));
+
+        assertEquals(2, average.count());
+        assertEquals((10.0 + 50.0) / 2, average.average());
+    }
+
+    @Test
+    void apply_WhenRowUpdatedAndDeleted_ShouldReturnExactlyToPreviousAverage() {
+        Product first = product(3, 0.1);
+        average.apply(null, first);
+        double before = average.average();
+
+        Product second = product(7, 1e9 / 3);
+        Product updated = product(11, 0.7);
+        average.apply(null, second);
+        average.apply(second, updated);
+        average.apply(updated, null);
+
+        assertEquals(1, average.count());
+        assertEquals(before, average.average());
+        assertEquals(0.1 / 3, average.average());
+    }
+
+    @Test
+    void average_WhenEmpty_ShouldReturnZero() {
+        average.apply(null, product(4, 8.0));
+        average.reset();
+
+        assertEquals(0, average.count());
+        assertEquals(0.0, average.average());
+    }
+
+    private static Product product(Integer unitsSold, Double totalProfit) {
+        Product product = new Product();
+        product.setUnitsSold(unitsSold);
+        product.setTotalProfit(totalProfit);
+        return product;
+    }
+}
@@ -0,0 +1,52 @@
+package world_products_selling.world_products_selling.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    @Test
+    void quantile_ShouldStayWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (int i = 1; i <= 100_000; i++) {
+            sketch.add(i / 100.0, 1);
+        }
+
+        for (double q : new double[]{0.0, 0.5, 0.95, 0.99, 0.999, 1.0}) {
+            double exact = (1 + Math.floor(q * (100_000 - 1))) / 100.0;
+            assertEquals(exact, sketch.quantile(q), exact * 0.01, "q=" + q);
+        }
+        assertEquals(100_000, sketch.count());
+    }
+
+    @Test
+    void add_WhenValuesRemoved_ShouldReturnToPreviousQuantiles() {
+        QuantileSketch sketch = new QuantileSketch(0.02);
+        sketch.add(-5.0, 1);
+        sketch.add(0.0, 1);
+        sketch.add(10.0, 1);
+        double median = sketch.quantile(0.5);
+
+        sketch.add(1e6, 1);
+        sketch.add(1e-3, 1);
+        sketch.add(1e6, -1);
+        sketch.add(1e-3, -1);
+
+        assertEquals(3, sketch.count());
+        assertEquals(median, sketch.quantile(0.5));
+        assertEquals(0.0, median);
+        assertEquals(-5.0, sketch.quantile(0.0), 5.0 * 0.02);
+        assertEquals(10.0, sketch.quantile(1.0), 10.0 * 0.02);
+    }
+
+    @Test
+    void quantile_WhenEmpty_ShouldReturnNaN() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        sketch.add(3.0, 1);
+        sketch.clear();
+
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(1.0));
+    }
+}
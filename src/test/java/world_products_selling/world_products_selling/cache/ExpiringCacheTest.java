@@ -0,0 +1,56 @@
+package world_products_selling.world_products_selling.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void get_WhenTtlElapsed_ShouldDropEntry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofSeconds(10), 10, now::get);
+        cache.put("a", "1");
+
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals("1", cache.get("a"));
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void put_WhenFull_ShouldEvictLeastRecentlyUsed() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(1), 2, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(new ExpiringCache.Stats(3, 1, 1, 2), cache.stats());
+    }
+
+    @Test
+    void put_WhenWeighted_ShouldEvictUntilTotalWeightFits() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(1), 5, String::length, now::get);
+        cache.put("a", "111");
+        cache.put("b", "22");
+
+        cache.put("c", "333");
+        cache.put("d", "666666");
+
+        assertNull(cache.get("a"));
+        assertEquals("22", cache.get("b"));
+        assertEquals("333", cache.get("c"));
+        assertNull(cache.get("d"));
+        assertEquals(new ExpiringCache.Stats(2, 2, 1, 2), cache.stats());
+    }
+}
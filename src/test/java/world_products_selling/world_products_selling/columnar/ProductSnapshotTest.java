@@ -0,0 +1,133 @@
+package world_products_selling.world_products_selling.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSnapshotTest {
+    private static final ProductSnapshot.Source SOURCE = new ProductSnapshot.Source(1000, 42, 0x1234abcdL);
+    // Размер и отметка совпали - содержимое источника не читается
+    private static final ProductSnapshot.Checksum UNUSED = () -> {
+        throw new AssertionError("Содержимое источника не должно читаться");
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void read_ShouldRestoreLiveRowsWrittenBefore() throws IOException {
+        // Arrange
+        ProductColumns columns = new ProductColumns();
+        // 300 стран - коды столбца country занимают по два байта
+        for (int i = 1; i <= 300; i++) {
+            columns.append(i, "Europe", "Country " + i, "Meat", "Online", "H",
+                    (int) LocalDate.of(2010, 1, 1).toEpochDay() + i, i, i * 1.5);
+        }
+        columns.append(301, null, "Исландия", null, null, null, ProductColumns.NULL_INT, ProductColumns.NULL_INT, Double.NaN);
+        columns.delete(columns.findRow(2));
+        Product changed = columns.toProduct(columns.findRow(3));
+        changed.setUnitsSold(99);
+        columns.set(columns.findRow(3), changed);
+        Path file = dir.resolve("products.snapshot");
+
+        // Act
+        long bytes = ProductSnapshot.write(file, SOURCE, 305, columns);
+        ProductColumns restored = new ProductColumns();
+        int lastAssignedId = ProductSnapshot.read(file, SOURCE, UNUSED, restored);
+
+        // Assert
+        assertEquals(Files.size(file), bytes);
+        assertEquals(305, lastAssignedId);
+        assertEquals(300, restored.liveCount());
+        assertEquals(-1, restored.findRow(2));
+        Product updated = restored.toProduct(restored.findRow(3));
+        assertEquals(99, updated.getUnitsSold());
+        assertEquals(1, updated.getVersion());
+        Product last = restored.toProduct(restored.findRow(300));
+        assertEquals("Country 300", last.getCountry());
+        assertEquals(LocalDate.of(2010, 1, 1).plusDays(300), last.getOrderDate());
+        assertEquals(450.0, last.getTotalProfit());
+        Product empty = restored.toProduct(restored.findRow(301));
+        assertEquals("Исландия", empty.getCountry());
+        assertNull(empty.getRegion());
+        assertNull(empty.getOrderDate());
+        assertNull(empty.getUnitsSold());
+        assertNull(empty.getTotalProfit());
+    }
+
+    @Test
+    void read_WhenOnlyStampChanged_ShouldCompareContentChecksum() throws IOException {
+        // Arrange
+        Path file = dir.resolve("products.snapshot");
+        ProductSnapshot.write(file, SOURCE, 1, oneRow());
+        ProductSnapshot.Source touched = new ProductSnapshot.Source(SOURCE.size(), SOURCE.stamp() + 1, 0);
+        ProductColumns restored = new ProductColumns();
+
+        // Act
+        int lastAssignedId = ProductSnapshot.read(file, touched, SOURCE::checksum, restored);
+
+        // Assert
+        assertEquals(1, lastAssignedId);
+        assertEquals(1, restored.liveCount());
+    }
+
+    @Test
+    void read_WhenSourceChanged_ShouldRefuseSnapshot() throws IOException {
+        // Arrange
+        Path file = dir.resolve("products.snapshot");
+        ProductSnapshot.write(file, SOURCE, 1, oneRow());
+        ProductSnapshot.Source changed = new ProductSnapshot.Source(SOURCE.size(), SOURCE.stamp() + 1, 0);
+        ProductSnapshot.Source resized = new ProductSnapshot.Source(SOURCE.size() + 1, SOURCE.stamp(), 0);
+        ProductColumns restored = new ProductColumns();
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> ProductSnapshot.read(file, changed, () -> SOURCE.checksum() + 1, restored));
+        assertThrows(IOException.class, () -> ProductSnapshot.read(file, resized, UNUSED, restored));
+        assertEquals(0, restored.size());
+    }
+
+    @Test
+    void read_WhenStampOrSizeUnknown_ShouldCompareContentChecksum() throws IOException {
+        // Arrange
+        Path file = dir.resolve("products.snapshot");
+        ProductSnapshot.Source noStamp = new ProductSnapshot.Source(SOURCE.size(), ProductSnapshot.UNKNOWN, SOURCE.checksum());
+        ProductSnapshot.Source noSize = new ProductSnapshot.Source(ProductSnapshot.UNKNOWN, SOURCE.stamp(), SOURCE.checksum());
+        ProductColumns restored = new ProductColumns();
+
+        // Act & Assert: отредактированный CSV той же длины
+        ProductSnapshot.write(file, noStamp, 1, oneRow());
+        assertThrows(IOException.class, () -> ProductSnapshot.read(file, noStamp, () -> SOURCE.checksum() + 1, restored));
+        ProductSnapshot.write(file, noSize, 1, oneRow());
+        assertThrows(IOException.class, () -> ProductSnapshot.read(file, noSize, () -> SOURCE.checksum() + 1, restored));
+        assertEquals(0, restored.size());
+        assertEquals(1, ProductSnapshot.read(file, noSize, SOURCE::checksum, restored));
+    }
+
+    @Test
+    void read_WhenByteCorrupted_ShouldRefuseSnapshot() throws IOException {
+        // Arrange
+        Path file = dir.resolve("products.snapshot");
+        ProductSnapshot.write(file, SOURCE, 1, oneRow());
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        Files.write(file, content);
+        ProductColumns restored = new ProductColumns();
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> ProductSnapshot.read(file, SOURCE, UNUSED, restored));
+        assertEquals(0, restored.size());
+    }
+
+    private static ProductColumns oneRow() {
+        ProductColumns columns = new ProductColumns();
+        columns.append(1, "Asia", "Japan", "Cereal", "Offline", "C", 15000, 4, 20.0);
+        return columns;
+    }
+}
@@ -0,0 +1,41 @@
+package world_products_selling.world_products_selling.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void start_WhenVirtualThreadSleepsInsideSynchronized_ShouldCountPinning() throws Exception {
+        // Arrange
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(10));
+        Object lock = new Object();
+        monitor.start();
+
+        try {
+            // Act
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (monitor.pinnedCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+
+            // Assert
+            assertEquals(1, monitor.pinnedCount());
+        } finally {
+            monitor.stop();
+        }
+        assertFalse(monitor.isRunning());
+    }
+}
@@ -10,16 +10,31 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.dto.ProductPage;
 import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.service.ProductChangeFeed;
 import world_products_selling.world_products_selling.service.ProductService;
+import world_products_selling.world_products_selling.service.ProductVersions;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +52,12 @@ class ProductControllerTest {
     @MockitoBean
     private ProductService productService;
 
+    @MockitoBean
+    private ProductVersions productVersions;
+
+    @MockitoBean
+    private ProductChangeFeed productChangeFeed;
+
     private Product testProduct;
 
     @BeforeEach
@@ -51,6 +72,9 @@ class ProductControllerTest {
         testProduct.setOrderDate(LocalDate.of(2024, 1, 15));
         testProduct.setUnitsSold(100);
         testProduct.setTotalProfit(5000.0);
+
+        when(productVersions.tableTag()).thenReturn("\"t-7\"");
+        when(productVersions.rowTag(anyInt())).thenReturn("\"t-0\"");
     }
 
     @Test
@@ -89,6 +113,131 @@ class ProductControllerTest {
         verify(productService, times(1)).getAll();
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    void getPage_ShouldReturnItemsAndNextCursor() throws Exception {
+        when(productService.getPage("MQ", 1)).thenReturn(new ProductPage(List.of(testProduct), "Mg"));
+
+        mockMvc.perform(get("/api/products/page")
+                        .param("cursor", "MQ")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].id", is(1)))
+                .andExpect(jsonPath("$.next", is("Mg")));
+
+        verify(productService, times(1)).getPage("MQ", 1);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void search_ShouldPassFilterToService() throws Exception {
+        ProductFilter filter = new ProductFilter("Europe", null, null, null, null,
+                LocalDate.of(2014, 1, 1), LocalDate.of(2014, 12, 31), 100.0);
+        when(productService.search(filter, null, 20)).thenReturn(new ProductPage(List.of(testProduct), null));
+
+        mockMvc.perform(get("/api/products/search")
+                        .param("region", "Europe")
+                        .param("country", "")
+                        .param("from", "2014-01-01")
+                        .param("to", "2014-12-31")
+                        .param("minProfit", "100")
+                        .param("size", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.next").doesNotExist());
+
+        verify(productService, times(1)).search(filter, null, 20);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void stream_ShouldWriteJsonArrayOfProducts() throws Exception {
+        Product product2 = new Product();
+        product2.setId(2);
+        product2.setCountry("Japan");
+
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(testProduct);
+            consumer.accept(product2);
+            return null;
+        }).when(productService).streamAll(any());
+
+        MvcResult result = mockMvc.perform(get("/api/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].country", is("Germany")))
+                .andExpect(jsonPath("$[1].country", is("Japan")));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void export_AsCsv_ShouldWriteHeaderAndQuotedRows() throws Exception {
+        Product product2 = new Product();
+        product2.setId(2);
+        product2.setCountry("Korea, South");
+
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(1);
+            consumer.accept(testProduct);
+            consumer.accept(product2);
+            return null;
+        }).when(productService).export(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/products/export").param("format", "csv").param("region", "Europe"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("products.csv")))
+                .andExpect(content().string(
+                        "Id,Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit\n"
+                                + "1,Europe,Germany,Office Supplies,Online,H,2024-01-15,100,5000.0\n"
+                                + "2,,\"Korea, South\",,,,,,\n"));
+
+        verify(productService).export(eq(new ProductFilter("Europe", null, null, null, null, null, null, null)), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void export_WithGzipAcceptEncoding_ShouldCompressNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(1);
+            consumer.accept(testProduct);
+            return null;
+        }).when(productService).export(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/products/export").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsByteArray();
+        String json = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(json.endsWith("\n"));
+        assertEquals("Germany", objectMapper.readTree(json).get("country").asText());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void export_WithUnknownFormat_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/products/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).export(any(), any());
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void getOne_WithAdminRole_WhenProductExists_ShouldReturnProduct() throws Exception {
@@ -175,6 +324,27 @@ class ProductControllerTest {
         verify(productService, times(1)).add(any(Product.class));
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void addAll_WithAdminRole_ShouldReturnCreatedProducts() throws Exception {
+        Product product2 = new Product();
+        product2.setId(2);
+        product2.setCountry("Japan");
+
+        when(productService.addAll(anyList())).thenReturn(List.of(testProduct, product2));
+
+        mockMvc.perform(post("/api/products/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(testProduct, product2))))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].id", is(2)));
+
+        verify(productService, times(1)).addAll(anyList());
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void update_WithAdminRole_WhenProductExists_ShouldReturnUpdatedProduct() throws Exception {
@@ -208,29 +378,60 @@ class ProductControllerTest {
         verify(productService, times(1)).update(any(Product.class));
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @SuppressWarnings("unchecked")
+    void patch_ShouldApplyOnlyFieldsFromBody() throws Exception {
+        when(productService.patch(eq(1), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, Consumer.class).accept(testProduct);
+            return testProduct;
+        });
+
+        mockMvc.perform(patch("/api/products/1")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"totalProfit\": 1200.5, \"version\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalProfit", is(1200.5)))
+                .andExpect(jsonPath("$.version", is(3)))
+                .andExpect(jsonPath("$.country", is("Germany")));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void delete_WithVersion_WhenRowChanged_ShouldReturn409() throws Exception {
+        doThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Запись изменена другим запросом"))
+                .when(productService).delete(1, 2);
+
+        mockMvc.perform(delete("/api/products/1")
+                        .param("version", "2")
+                        .with(csrf()))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void delete_WithAdminRole_WhenProductExists_ShouldReturn204() throws Exception {
-        doNothing().when(productService).delete(1);
+        doNothing().when(productService).delete(1, null);
 
         mockMvc.perform(delete("/api/products/1")
                         .with(csrf()))
                 .andExpect(status().isNoContent());
 
-        verify(productService, times(1)).delete(1);
+        verify(productService, times(1)).delete(1, null);
     }
 
     @Test
     @WithMockUser(roles = "USER")
     void delete_WhenProductDoesNotExist_ShouldReturn404() throws Exception {
         doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Запись не существует"))
-                .when(productService).delete(999);
+                .when(productService).delete(999, null);
 
         mockMvc.perform(delete("/api/products/999")
                         .with(csrf()))
                 .andExpect(status().isNotFound());
 
-        verify(productService, times(1)).delete(999);
+        verify(productService, times(1)).delete(999, null);
     }
 
     @Test
@@ -259,4 +460,80 @@ class ProductControllerTest {
 
         verify(productService, times(1)).findAverageProfitPerUnit();
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getStats_ShouldReturnGroupedRows() throws Exception {
+        when(productService.getStats(List.of("region", "itemType"), List.of("sum(totalProfit)", "count")))
+                .thenReturn(List.of(Map.of("region", "Europe", "itemType", "Meat", "sum(totalProfit)", 1500.0, "count", 2L)));
+
+        mockMvc.perform(get("/api/products/stats")
+                        .param("groupBy", "region,itemType")
+                        .param("metrics", "sum(totalProfit),count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].region", is("Europe")))
+                .andExpect(jsonPath("$[0]['sum(totalProfit)']", is(1500.0)))
+                .andExpect(jsonPath("$[0].count", is(2)));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void getStats_WhenTableTagMatches_ShouldReturnNotModified() throws Exception {
+        mockMvc.perform(get("/api/products/stats")
+                        .param("groupBy", "region")
+                        .header("If-None-Match", "\"t-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"t-7\""));
+
+        verify(productService, never()).getStats(any(), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void getTimeSeries_ShouldDefaultToMonthBuckets() throws Exception {
+        when(productService.getTimeSeries("month", LocalDate.of(2014, 1, 1), null, "region", null))
+                .thenReturn(List.of(Map.of("bucket", LocalDate.of(2014, 1, 1), "region", "Europe", "count", 3L)));
+
+        mockMvc.perform(get("/api/products/timeseries")
+                        .param("from", "2014-01-01")
+                        .param("groupBy", "region"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].bucket", is("2014-01-01")))
+                .andExpect(jsonPath("$[0].count", is(3)));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void getAll_ShouldReturnTableETag() throws Exception {
+        when(productService.getAll()).thenReturn(List.of(testProduct));
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"t-7\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void getOne_WhenETagMatches_ShouldReturn304WithoutReadingProduct() throws Exception {
+        mockMvc.perform(get("/api/products/1")
+                        .header("If-None-Match", "\"t-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(productService, never()).getOne(anyInt());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void averageProfitPerUnit_WhenETagIsStale_ShouldReturnValue() throws Exception {
+        when(productService.findAverageProfitPerUnit()).thenReturn(12.5);
+
+        mockMvc.perform(get("/api/products/avg")
+                        .header("If-None-Match", "\"t-6\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"t-7\""))
+                .andExpect(content().string("12.5"));
+    }
+}
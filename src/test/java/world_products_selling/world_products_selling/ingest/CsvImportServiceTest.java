@@ -0,0 +1,341 @@
+package world_products_selling.world_products_selling.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import world_products_selling.world_products_selling.config.CsvDataLoader;
+import world_products_selling.world_products_selling.entity.Product;
+import world_products_selling.world_products_selling.repository.ImportCheckpointRepository;
+import world_products_selling.world_products_selling.repository.ImportRowRepository;
+import world_products_selling.world_products_selling.repository.ProductRepository;
+import world_products_selling.world_products_selling.service.ProductChangedEvent;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CsvImportServiceTest {
+    private static final String HEADER =
+            "Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit\n";
+    private static final String CSV = HEADER
+            + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\n"
+            + "Europe,Russia,Meat,Online,L,06/22/2017,4848,277305.60\n"
+            + "Asia,Japan,Cereal,Offline,C,2012-02-28,not-a-number,1.0\n"
+            + "Europe,Moldova,Meat,Online,L,02/28/2012,7225,413270.00\n"
+            + "Asia,China,Snacks,Offline,M,03.04.2014,10,20.5\n";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ImportCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ImportRowRepository importRowRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MeterRegistry meterRegistry;
+
+    private CsvImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        importService = new CsvImportService(productRepository, checkpointRepository, importRowRepository,
+                transactionManager, eventPublisher, meterRegistry, 2, 2, 2);
+    }
+
+    @Test
+    void importCsv_ShouldCommitEachChunkWithCheckpoint() throws Exception {
+        // Arrange
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(checkpointRepository.findBySource("test")).thenReturn(Optional.empty());
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+            chunkSizes.add(((List<?>) invocation.getArgument(0)).size());
+            return withIds(invocation.getArgument(0));
+        });
+
+        // Act
+        ImportResult result = importService.importCsv("test", new StringReader(CSV));
+
+        // Assert
+        assertEquals(5, result.rowsRead());
+        assertEquals(4, result.rowsInserted());
+        assertEquals(1, result.rowsRejected());
+        assertEquals(List.of(2, 2), chunkSizes);
+
+        ArgumentCaptor<ImportCheckpoint> checkpoints = ArgumentCaptor.forClass(ImportCheckpoint.class);
+        verify(checkpointRepository, times(3)).save(checkpoints.capture());
+        assertEquals(2, checkpoints.getAllValues().get(0).rowsCommitted());
+        assertEquals(5, checkpoints.getAllValues().get(2).rowsCommitted());
+        assertTrue(checkpoints.getAllValues().get(2).completed());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void importCsv_ShouldCountRowsByResult() throws Exception {
+        // Arrange
+        when(checkpointRepository.findBySource("test")).thenReturn(Optional.empty());
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> withIds(invocation.getArgument(0)));
+
+        // Act
+        importService.importCsv("test", new StringReader(CSV));
+
+        // Assert
+        assertEquals(5, meterRegistry.get("app.csv.rows").tag("result", "parsed").counter().count());
+        assertEquals(1, meterRegistry.get("app.csv.rows").tag("result", "rejected").counter().count());
+        assertEquals(4, meterRegistry.get("app.csv.rows").tag("result", "inserted").counter().count());
+    }
+
+    @Test
+    void importCsv_WhenCheckpointExists_ShouldResumeAfterCommittedRows() throws Exception {
+        // Arrange
+        List<Product> saved = new ArrayList<>();
+        when(checkpointRepository.findBySource("test"))
+                .thenReturn(Optional.of(new ImportCheckpoint("test", 3, false)));
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return withIds(invocation.getArgument(0));
+        });
+
+        // Act
+        ImportResult result = importService.importCsv("test", new StringReader(CSV));
+
+        // Assert
+        assertEquals(3, result.rowsResumed());
+        assertEquals(2, result.rowsInserted());
+        assertEquals("Moldova", saved.get(0).getCountry());
+        assertEquals("China", saved.get(1).getCountry());
+    }
+
+    @Test
+    void importCsv_WhenResumedAfterUnambiguousRows_ShouldKeepDateOrderOfFileHead() throws Exception {
+        // Arrange: по первой строке порядок - день/месяц, оставшиеся строки неоднозначны
+        String csv = HEADER
+                + "Europe,Iceland,Baby Food,Online,H,20/11/2010,8435,808579.10\n"
+                + "Europe,Russia,Meat,Online,L,03/04/2014,4848,277305.60\n";
+        List<Product> saved = new ArrayList<>();
+        when(checkpointRepository.findBySource("test"))
+                .thenReturn(Optional.of(new ImportCheckpoint("test", 1, false)));
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return withIds(invocation.getArgument(0));
+        });
+
+        // Act
+        importService.importCsv("test", new StringReader(csv));
+
+        // Assert
+        assertEquals(1, saved.size());
+        assertEquals(LocalDate.of(2014, 4, 3), saved.get(0).getOrderDate());
+    }
+
+    @Test
+    void importCsv_WhenAlreadyCompleted_ShouldNotTouchRepository() throws Exception {
+        // Arrange
+        when(checkpointRepository.findBySource("test"))
+                .thenReturn(Optional.of(new ImportCheckpoint("test", 5, true)));
+
+        // Act
+        ImportResult result = importService.importCsv("test", new StringReader(CSV));
+
+        // Assert
+        assertEquals(0, result.rowsRead());
+        verify(productRepository, never()).saveAll(any());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    @Test
+    void importFile_ShouldCommitBatchesFromWritersAndCheckpointOnceCompleted(@TempDir Path dir) throws Exception {
+        // Arrange
+        Path file = Files.writeString(dir.resolve("sales.csv"), HEADER + CSV.substring(HEADER.length()).repeat(3000));
+        List<Product> saved = Collections.synchronizedList(new ArrayList<>());
+        when(checkpointRepository.findBySource("test")).thenReturn(Optional.empty());
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return withIds(invocation.getArgument(0));
+        });
+
+        // Act
+        ImportResult result = importService.importFile("test", file);
+
+        // Assert
+        assertEquals(15000, result.rowsRead());
+        assertEquals(12000, result.rowsInserted());
+        assertEquals(3000, result.rowsRejected());
+        assertEquals(3000, saved.stream().filter(product -> "China".equals(product.getCountry())).count());
+        verify(checkpointRepository).save(new ImportCheckpoint("test", 15000, true));
+    }
+
+    @Test
+    void refresh_ShouldUpdateSameSaleAndReplaceUnrelatedRows() throws Exception {
+        // Arrange
+        String before = HEADER
+                + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\n"
+                + "Europe,Russia,Meat,Online,L,06/22/2017,4848,277305.60\n"
+                + "Europe,Moldova,Meat,Online,L,02/28/2012,7225,413270.00\n"
+                + "Asia,Japan,Cereal,Offline,C,02/28/2012,1,1.0\n";
+        String after = HEADER
+                + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\n"
+                + "Europe,Russia,Meat,Online,L,06/22/2017,4849,277305.60\n"
+                + "Europe,Moldova,Meat,Online,L,02/28/2012,7225,413270.00\n"
+                + "Asia,China,Snacks,Offline,M,03/04/2014,10,20.5\n"
+                + "Africa,Kenya,Fruits,Online,L,05/06/2015,3,4.5\n";
+        List<ImportRow> stored = fingerprints(before);
+        when(importRowRepository.existsBySource("test")).thenReturn(true);
+        doAnswer(invocation -> {
+            stored.forEach(invocation.<Consumer<ImportRow>>getArgument(1));
+            return null;
+        }).when(importRowRepository).forEach(eq("test"), any());
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Product> found = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                found.add(product(id, before.split("\n")[id]));
+            }
+            return found;
+        });
+        List<Product> updated = new ArrayList<>();
+        when(productRepository.update(any())).thenAnswer(invocation -> {
+            updated.add(invocation.getArgument(0));
+            return Optional.of(new Product());
+        });
+        List<Product> inserted = new ArrayList<>();
+        when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+            inserted.addAll(invocation.getArgument(0));
+            return withIds(invocation.getArgument(0));
+        });
+        when(productRepository.delete(4, null)).thenReturn(Optional.of(new Product()));
+
+        // Act
+        RefreshResult result = importService.refresh("test", () -> new StringReader(after));
+
+        // Assert
+        assertEquals(5, result.rowsRead());
+        assertEquals(2, result.rowsUnchanged());
+        assertEquals(1, result.rowsUpdated());
+        assertEquals(2, result.rowsInserted());
+        assertEquals(1, result.rowsDeleted());
+        assertEquals(List.of(2), updated.stream().map(Product::getId).toList());
+        assertEquals(4849, updated.get(0).getUnitsSold());
+        // Продажа в Японии не превращается в продажу в Китае под тем же id
+        assertEquals(List.of("China", "Kenya"), inserted.stream().map(Product::getCountry).toList());
+        verify(importRowRepository).deleteAll(List.of(4));
+        verify(productRepository, never()).streamAll(any());
+        verify(eventPublisher, times(4)).publishEvent(any(ProductChangedEvent.class));
+        verify(checkpointRepository).save(new ImportCheckpoint("test", 5, true));
+    }
+
+    @Test
+    void refresh_WhenFingerprintsMissing_ShouldAdoptProductsAndDeleteNone() throws Exception {
+        // Arrange
+        String csv = HEADER
+                + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\n"
+                + "Europe,Russia,Meat,Online,L,6/22/2017,4848,277305.60\n";
+        Product iceland = product(10, "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10");
+        // Загружена раньше без даты
+        Product russia = product(11, "Europe,Russia,Meat,Online,L,,4848,277305.60");
+        Product created = product(12, "Europe,Malta,Meat,Online,H,11/20/2010,1,2.0");
+        when(productRepository.count()).thenReturn(3L);
+        doAnswer(invocation -> {
+            List.of(iceland, russia, created).forEach(invocation.<Consumer<Product>>getArgument(0));
+            return null;
+        }).when(productRepository).streamAll(any());
+        when(productRepository.update(any())).thenReturn(Optional.of(russia));
+
+        // Act
+        RefreshResult result = importService.refresh("test", () -> new StringReader(csv));
+
+        // Assert
+        assertEquals(1, result.rowsUnchanged());
+        assertEquals(1, result.rowsUpdated());
+        assertEquals(0, result.rowsInserted());
+        assertEquals(0, result.rowsDeleted());
+        ArgumentCaptor<Product> updated = ArgumentCaptor.forClass(Product.class);
+        verify(productRepository).update(updated.capture());
+        assertEquals(11, updated.getValue().getId());
+        assertNotNull(updated.getValue().getOrderDate());
+        verify(productRepository, never()).delete(any(), any());
+
+        ArgumentCaptor<List<ImportRow>> rows = ArgumentCaptor.captor();
+        verify(importRowRepository, atLeastOnce()).saveAll(eq("test"), rows.capture());
+        List<Integer> adopted = rows.getAllValues().stream().flatMap(List::stream).map(ImportRow::productId).toList();
+        assertEquals(List.of(10, 11), adopted);
+    }
+
+    @Test
+    void refresh_WhenAdoptionWasInterrupted_ShouldContinueAdoptingAndDeleteNone() throws Exception {
+        // Arrange: часть отпечатков уже сохранена прерванным усыновлением
+        String csv = HEADER
+                + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\n"
+                + "Europe,Russia,Meat,Online,L,6/22/2017,4848,277305.60\n";
+        Product iceland = product(10, "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10");
+        Product russia = product(11, "Europe,Russia,Meat,Online,L,6/22/2017,4848,277305.60");
+        Product created = product(12, "Europe,Malta,Meat,Online,H,11/20/2010,1,2.0");
+        when(checkpointRepository.isAdopting("test")).thenReturn(true);
+        doAnswer(invocation -> {
+            List.of(iceland, russia, created).forEach(invocation.<Consumer<Product>>getArgument(0));
+            return null;
+        }).when(productRepository).streamAll(any());
+
+        // Act
+        RefreshResult result = importService.refresh("test", () -> new StringReader(csv));
+
+        // Assert
+        assertEquals(2, result.rowsUnchanged());
+        assertEquals(0, result.rowsInserted());
+        assertEquals(0, result.rowsDeleted());
+        verify(productRepository, never()).delete(any(), any());
+        verify(importRowRepository, never()).forEach(any(), any());
+        verify(checkpointRepository).saveAdopting("test", true);
+        verify(checkpointRepository).saveAdopting("test", false);
+    }
+
+    private static Product product(int id, String line) {
+        Product product = CsvDataLoader.toProduct(line.split(",", -1));
+        product.setId(id);
+        return product;
+    }
+
+    // Сохранённые продукты получают id, как от последовательности
+    private static List<Product> withIds(List<Product> products) {
+        products.forEach(product -> product.setId(100 + products.indexOf(product)));
+        return products;
+    }
+
+    // Отпечатки строк csv для продуктов с id 1, 2, ... в порядке ImportRowRepository.forEach
+    private static List<ImportRow> fingerprints(String csv) {
+        List<ImportRow> rows = new ArrayList<>();
+        String[] lines = csv.split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            rows.add(new ImportRow(i, RowFingerprint.of(CsvDataLoader.toProduct(lines[i].split(",")))));
+        }
+        rows.sort(Comparator.comparingLong(ImportRow::fingerprint).thenComparingInt(ImportRow::productId));
+        return rows;
+    }
+}
@@ -0,0 +1,62 @@
+package world_products_selling.world_products_selling.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateParserTest {
+
+    @Test
+    void parse_ShouldAcceptSupportedFormats() {
+        DateParser parser = DateParser.MONTH_FIRST;
+
+        assertEquals(LocalDate.of(2010, 11, 20), parser.parse("11/20/2010"));
+        assertEquals(LocalDate.of(2015, 8, 31), parser.parse("8/31/2015"));
+        assertEquals(LocalDate.of(2014, 4, 3), parser.parse(" 03.04.2014 "));
+        assertEquals(LocalDate.of(2012, 2, 28), parser.parse("2012-02-28"));
+        assertEquals(LocalDate.of(2010, 12, 8), parser.parse("08-12-2010"));
+        assertEquals(LocalDate.of(2016, 2, 29), parser.parse("2/29/2016"));
+    }
+
+    @Test
+    void parseEpochDay_ShouldMatchLocalDateForEveryDayOfSeveralYears() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            String text = date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear();
+            assertEquals(date.toEpochDay(), DateParser.MONTH_FIRST.parseEpochDay(text), text);
+        }
+    }
+
+    @Test
+    void parseEpochDay_WhenValueIsNotADate_ShouldReturnNullDay() {
+        DateParser parser = DateParser.MONTH_FIRST;
+
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay(null));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay(""));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay("not a date"));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay("2/30/2015"));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay("13/13/2015"));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay("1/2/15"));
+        assertEquals(DateParser.NULL_DAY, parser.parseEpochDay("1/2-2015"));
+    }
+
+    @Test
+    void sniff_WhenSlashDatesHaveDayFirst_ShouldSwapDayAndMonth() {
+        DateParser parser = DateParser.sniff(List.of(
+                new String[]{"x", "25/12/2010"},
+                new String[]{"x", "03/04/2011"},
+                new String[]{"x"}), 1);
+
+        assertSame(DateParser.DAY_FIRST, parser);
+        assertEquals(LocalDate.of(2011, 4, 3), parser.parse("03/04/2011"));
+        assertSame(DateParser.MONTH_FIRST, DateParser.sniff(List.<String[]>of(new String[]{"x", "8/31/2015"}), 1));
+    }
+
+    @Test
+    void parse_WhenPreferredOrderIsInvalid_ShouldTryTheOther() {
+        assertEquals(LocalDate.of(2010, 12, 25), DateParser.MONTH_FIRST.parse("25/12/2010"));
+        assertEquals(LocalDate.of(2015, 8, 31), DateParser.DAY_FIRST.parse("8/31/2015"));
+    }
+}
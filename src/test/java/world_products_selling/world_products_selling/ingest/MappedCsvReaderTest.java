@@ -0,0 +1,58 @@
+package world_products_selling.world_products_selling.ingest;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCsvReaderTest {
+    private static final String CSV = "Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit\r\n"
+            + "Europe,Iceland,Baby Food,Online,H,11/20/2010,8435,808579.10\r\n"
+            + "Europe,\"Russia, \"\"Moscow\"\"\",Meat,Online,L,6/22/2017,4848,277305.60\n"
+            + "\"Asia\",Japan,\"Cereal\nand more\",Offline,C,2/28/2012,1,1.0\n"
+            + "Азия,Китай,Snacks,Offline,M,03.04.2014,10,20.5\n"
+            + "\n"
+            + "Europe,Moldova,Meat,Online,L,02/28/2012,7225,413270.00";
+
+    @Test
+    void split_WhenRangesCutQuotedFields_ShouldReadSameRecordsAsOpenCsv(@TempDir Path dir) throws Exception {
+        // Arrange
+        Path file = Files.writeString(dir.resolve("sales.csv"), CSV);
+        List<String[]> expected = new ArrayList<>();
+        try (CSVReader csvReader = new CSVReaderBuilder(new StringReader(CSV))
+                .withCSVParser(new CSVParserBuilder().withEscapeChar('\0').build())
+                .withSkipLines(1).build()) {
+            csvReader.forEach(expected::add);
+        }
+        ExecutorService executor = new ForkJoinPool(3);
+
+        // Act & Assert: любой размер участка даёт те же записи в том же порядке
+        try (MappedCsvReader csv = new MappedCsvReader(file)) {
+            for (long rangeSize = 1; rangeSize <= CSV.length(); rangeSize++) {
+                List<String[]> records = new ArrayList<>();
+                for (MappedCsvReader.Range range : csv.split(rangeSize, executor)) {
+                    csv.read(range, records::add);
+                }
+                assertEquals(expected.size(), records.size(), "rangeSize " + rangeSize);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), records.get(i), "rangeSize " + rangeSize + ", запись " + i);
+                }
+            }
+            assertEquals(2, csv.head(2).size());
+            assertEquals("Russia, \"Moscow\"", csv.head(2).get(1)[1]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package world_products_selling.world_products_selling.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedRecordsTest {
+
+    @Test
+    void open_WhenRecordsSpilled_ShouldMergeRunsInOrder() throws Exception {
+        // Arrange
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        List<long[]> actual = new ArrayList<>();
+
+        // Act: по 3 записи в памяти - 34 участка на диске
+        try (SortedRecords records = new SortedRecords(2, 3)) {
+            for (int i = 0; i < 100; i++) {
+                long[] record = {random.nextInt(10) - 5L, i};
+                expected.add(record);
+                records.add(record);
+            }
+            SortedRecords.Cursor cursor = records.open();
+            for (long[] record = cursor.next(); record != null; record = cursor.next()) {
+                actual.add(record.clone());
+            }
+        }
+
+        // Assert
+        expected.sort(Comparator.<long[]>comparingLong(record -> record[0]).thenComparingLong(record -> record[1]));
+        assertEquals(100, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "запись " + i);
+        }
+    }
+
+    @Test
+    void open_WhenRecordsFitInMemory_ShouldSortWithoutFiles() throws Exception {
+        // Arrange
+        try (SortedRecords records = new SortedRecords(1, 10)) {
+            records.add(3);
+            records.add(-1);
+            records.add(2);
+
+            // Act
+            SortedRecords.Cursor cursor = records.open();
+            List<Long> sorted = new ArrayList<>();
+            for (long[] record = cursor.next(); record != null; record = cursor.next()) {
+                sorted.add(record[0]);
+            }
+
+            // Assert
+            assertEquals(List.of(-1L, 2L, 3L), sorted);
+            assertEquals(3, records.size());
+        }
+    }
+}
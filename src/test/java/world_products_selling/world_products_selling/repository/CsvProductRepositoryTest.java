@@ -0,0 +1,147 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvProductRepositoryTest {
+    private static final String CSV =
+            "Region,Country,Item Type,Sales Channel,Order Priority,Order Date,Units Sold,Total Profit\n"
+                    + "Europe,Iceland,Baby Food,Online,H,11/20/2010,100,1000.0\n"
+                    + "Europe,Russia,Meat,Online,L,06/22/2017,10,500.0\n"
+                    + "Asia,Japan,Cereal,Offline,C,2012-02-28,broken,1.0\n"
+                    + "Asia,China,Meat,Offline,M,03.04.2014,4,20.0\n";
+
+    private CsvProductRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = new CsvProductRepository("");
+        repository.load(new StringReader(CSV));
+    }
+
+    @Test
+    void load_ShouldSkipBrokenRowsAndAssignSequentialIds() {
+        List<Product> products = repository.findAll();
+
+        assertEquals(3, products.size());
+        assertEquals(List.of(1, 2, 3), products.stream().map(Product::getId).toList());
+        assertEquals("China", products.get(2).getCountry());
+        assertEquals(LocalDate.of(2010, 11, 20), products.get(0).getOrderDate());
+    }
+
+    @Test
+    void findById_ShouldDecodeAllColumns() {
+        Product product = repository.findById(2).orElseThrow();
+
+        assertEquals("Europe", product.getRegion());
+        assertEquals("Russia", product.getCountry());
+        assertEquals("Meat", product.getItemType());
+        assertEquals("Online", product.getSalesChannel());
+        assertEquals("L", product.getOrderPriority());
+        assertEquals(LocalDate.of(2017, 6, 22), product.getOrderDate());
+        assertEquals(10, product.getUnitsSold());
+        assertEquals(500.0, product.getTotalProfit());
+    }
+
+    @Test
+    void save_ShouldInsertNewAndUpdateExistingRows() {
+        Product created = new Product();
+        created.setCountry("Kenya");
+        created.setUnitsSold(1);
+        repository.save(created);
+
+        Product updated = repository.findById(1).orElseThrow();
+        updated.setTotalProfit(2000.0);
+        repository.save(updated);
+
+        assertEquals(4, created.getId());
+        assertEquals("Kenya", repository.findById(4).orElseThrow().getCountry());
+        assertNull(repository.findById(4).orElseThrow().getTotalProfit());
+        assertEquals(2000.0, repository.findById(1).orElseThrow().getTotalProfit());
+        assertEquals(4, repository.count());
+    }
+
+    @Test
+    void deleteById_ShouldHideRowAndNeverReuseId() {
+        repository.deleteById(3);
+        repository.deleteById(2);
+
+        Product created = new Product();
+        repository.save(created);
+
+        assertFalse(repository.existsById(2));
+        assertFalse(repository.existsById(3));
+        assertEquals(4, created.getId());
+        assertEquals(List.of(1, 4), repository.findAll().stream().map(Product::getId).toList());
+    }
+
+    @Test
+    void findByIdGreaterThanOrderByIdAsc_ShouldSkipDeletedRows() {
+        repository.deleteById(2);
+
+        List<Product> page = repository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(2));
+
+        assertEquals(List.of(1, 3), page.stream().map(Product::getId).toList());
+        assertTrue(repository.findByIdGreaterThanOrderByIdAsc(3, Limit.of(2)).isEmpty());
+    }
+
+    @Test
+    void streamAll_ShouldVisitLiveRowsInIdOrder() {
+        repository.deleteById(1);
+        List<Integer> ids = new ArrayList<>();
+
+        repository.streamAll(product -> ids.add(product.getId()));
+
+        assertEquals(List.of(2, 3), ids);
+    }
+
+    @Test
+    void findAverageProfitPerUnit_ShouldAverageRatiosOfLiveRows() {
+        assertEquals((10.0 + 50.0 + 5.0) / 3, repository.findAverageProfitPerUnit(), 1e-9);
+
+        repository.deleteById(2);
+
+        assertEquals((10.0 + 5.0) / 2, repository.findAverageProfitPerUnit(), 1e-9);
+    }
+
+    @Test
+    void search_ShouldMatchAllCriteriaAfterCursor() {
+        ProductFilter filter = new ProductFilter(null, null, "Meat", null, null,
+                LocalDate.of(2014, 1, 1), null, 10.0);
+        List<ProductFilter.Criterion> order = List.of(ProductFilter.Criterion.ITEM_TYPE,
+                ProductFilter.Criterion.FROM, ProductFilter.Criterion.MIN_PROFIT);
+
+        List<Product> found = repository.search(filter, order, 0, Limit.of(10));
+
+        assertEquals(List.of(2, 3), found.stream().map(Product::getId).toList());
+        assertEquals(List.of(3), repository.search(filter, order, 2, Limit.of(10)).stream().map(Product::getId).toList());
+        assertTrue(repository.search(new ProductFilter("Africa", null, null, null, null, null, null, null),
+                List.of(ProductFilter.Criterion.REGION), 0, Limit.of(10)).isEmpty());
+    }
+
+    @Test
+    void update_ShouldCheckAndBumpVersion() {
+        Product product = repository.findById(1).orElseThrow();
+        product.setTotalProfit(2000.0);
+
+        Product before = repository.update(product).orElseThrow();
+
+        assertEquals(1000.0, before.getTotalProfit());
+        assertEquals(1, product.getVersion());
+        product.setVersion(0);
+        assertTrue(repository.update(product).isEmpty());
+        assertTrue(repository.delete(1, 0).isEmpty());
+        assertEquals(2000.0, repository.delete(1, 1).orElseThrow().getTotalProfit());
+        assertFalse(repository.existsById(1));
+    }
+}
@@ -0,0 +1,111 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcProductRepositoryTest {
+    private SingleConnectionDataSource dataSource;
+    private JdbcProductRepository repository;
+
+    // Одно соединение на все вызовы и LAZY_QUERY_EXECUTION в URL - как соединение из пула под JdbcEngine
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1", "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("schema-jdbc.sql"))
+                .execute(dataSource);
+        ProductDictionary dictionary = new ProductDictionary(dataSource);
+        dictionary.load();
+        repository = new JdbcProductRepository(dataSource, dictionary);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void save_ShouldInsertNewAndUpdateExistingRows() {
+        // Arrange
+        Product created = repository.save(product(null, 10));
+        Product changed = product(created.getId(), 20);
+
+        // Act
+        repository.save(changed);
+
+        // Assert
+        Product stored = repository.findById(created.getId()).orElseThrow();
+        assertEquals(20, stored.getUnitsSold());
+        assertEquals(1, stored.getVersion());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void save_WhenRowWasDeleted_ShouldNotInsertItAgain() {
+        // Arrange
+        Product created = repository.save(product(null, 10));
+        repository.deleteById(created.getId());
+        Product stale = product(created.getId(), 20);
+
+        // Act & Assert
+        assertThrows(IncorrectUpdateSemanticsDataAccessException.class, () -> repository.save(stale));
+        assertThrows(IncorrectUpdateSemanticsDataAccessException.class, () -> repository.saveAll(List.of(stale)));
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void stream_WhenSessionIsAlreadyLazy_ShouldLeaveItLazyForStreamAll() {
+        // Arrange
+        repository.save(product(null, 10));
+        repository.save(product(null, 20));
+        ProductFilter all = new ProductFilter(null, null, null, null, null, null, null, null);
+        List<Boolean> lazyDuringStreamAll = new ArrayList<>();
+
+        // Act: /export, затем streamAll на том же соединении
+        List<Product> exported = new ArrayList<>();
+        repository.stream(all, List.of(), exported::add);
+        repository.streamAll(product -> lazyDuringStreamAll.add(isLazy()));
+
+        // Assert
+        assertEquals(2, exported.size());
+        assertEquals(List.of(true, true), lazyDuringStreamAll);
+        assertTrue(isLazy());
+    }
+
+    private boolean isLazy() {
+        try {
+            return ProductRows.isLazy(dataSource.getConnection());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Product product(Integer id, int unitsSold) {
+        Product product = new Product();
+        product.setId(id);
+        product.setRegion("Europe");
+        product.setCountry("Iceland");
+        product.setItemType("Meat");
+        product.setSalesChannel("Online");
+        product.setOrderPriority("H");
+        product.setOrderDate(LocalDate.of(2014, 5, 1));
+        product.setUnitsSold(unitsSold);
+        product.setTotalProfit(unitsSold * 1.5);
+        return product;
+    }
+}
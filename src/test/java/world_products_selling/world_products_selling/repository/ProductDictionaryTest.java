@@ -0,0 +1,73 @@
+package world_products_selling.world_products_selling.repository;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import world_products_selling.world_products_selling.analytics.Dimension;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductDictionaryTest {
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE product_dictionary (dimension VARCHAR(32) NOT NULL, code INTEGER NOT NULL, "
+                + "name VARCHAR(255) NOT NULL, PRIMARY KEY (dimension, code), UNIQUE (dimension, name))");
+    }
+
+    @Test
+    void encode_WhenTransactionRollsBack_ShouldForgetNewCode() {
+        // Arrange
+        ProductDictionary dictionary = dictionary();
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // Act
+        Integer inside = transaction.execute(status -> {
+            Integer code = dictionary.encode(Dimension.COUNTRY, "Iceland");
+            assertEquals(code, dictionary.encode(Dimension.COUNTRY, "Iceland"));
+            assertEquals("Iceland", dictionary.decode(Dimension.COUNTRY, code));
+            status.setRollbackOnly();
+            return code;
+        });
+
+        // Assert
+        assertEquals(0, inside);
+        assertEquals(ProductDictionary.UNKNOWN_CODE, dictionary.lookup(Dimension.COUNTRY, "Iceland"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_dictionary", Integer.class));
+        assertEquals(0, dictionary.encode(Dimension.COUNTRY, "Malta"));
+    }
+
+    @Test
+    void encode_WhenAnotherProcessAddedValues_ShouldNotReuseTheirCodes() {
+        // Arrange: два экземпляра с общей базой, как два процесса
+        ProductDictionary first = dictionary();
+        ProductDictionary second = dictionary();
+
+        // Act
+        int iceland = first.encode(Dimension.COUNTRY, "Iceland");
+        int malta = second.encode(Dimension.COUNTRY, "Malta");
+        int icelandAgain = second.encode(Dimension.COUNTRY, "Iceland");
+
+        // Assert
+        assertNotEquals(iceland, malta);
+        assertEquals(iceland, icelandAgain);
+        assertEquals("Malta", first.decode(Dimension.COUNTRY, malta));
+        assertEquals(0, second.encode(Dimension.REGION, "Europe"));
+    }
+
+    private ProductDictionary dictionary() {
+        ProductDictionary dictionary = new ProductDictionary(dataSource);
+        dictionary.load();
+        return dictionary;
+    }
+}
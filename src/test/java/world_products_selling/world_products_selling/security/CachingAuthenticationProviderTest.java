@@ -0,0 +1,107 @@
+package world_products_selling.world_products_selling.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingAuthenticationProviderTest {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    private MeterRegistry meterRegistry;
+
+    private CachingAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        provider = new CachingAuthenticationProvider(delegate, Duration.ofMinutes(5), 100, meterRegistry);
+    }
+
+    @Test
+    void authenticate_WhenCredentialsRepeat_ShouldCallDelegateOnce() {
+        // Arrange
+        Authentication success = UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        when(delegate.authenticate(any())).thenReturn(success);
+
+        // Act
+        Authentication first = provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+        Authentication second = provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+
+        // Assert
+        assertSame(success, first);
+        assertSame(success, second);
+        verify(delegate, times(1)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_WhenPasswordDiffers_ShouldNotUseCachedResult() {
+        // Arrange
+        Authentication success = UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        when(delegate.authenticate(any())).thenReturn(success);
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+        when(delegate.authenticate(any())).thenThrow(new BadCredentialsException("Неверный пароль"));
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong")));
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong")));
+        verify(delegate, times(3)).authenticate(any());
+    }
+
+    @Test
+    void clear_ShouldForceFullCheckOnNextRequest() {
+        // Arrange
+        Authentication success = UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        when(delegate.authenticate(any())).thenReturn(success);
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+
+        // Act
+        provider.clear();
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+
+        // Assert
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_ShouldTimeEachCheckByResult() {
+        // Arrange
+        Authentication success = UsernamePasswordAuthenticationToken.authenticated(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        when(delegate.authenticate(any())).thenReturn(success);
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "adminPass"));
+        when(delegate.authenticate(any())).thenThrow(new BadCredentialsException("Неверный пароль"));
+
+        // Act
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong")));
+
+        // Assert
+        assertEquals(1, meterRegistry.get("app.authentication").tag("result", "verified").timer().count());
+        assertEquals(1, meterRegistry.get("app.authentication").tag("result", "cached").timer().count());
+        assertEquals(1, meterRegistry.get("app.authentication").tag("result", "rejected").timer().count());
+    }
+}
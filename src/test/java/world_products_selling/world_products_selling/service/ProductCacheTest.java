@@ -0,0 +1,67 @@
+package world_products_selling.world_products_selling.service;
+
+import org.junit.jupiter.api.Test;
+import world_products_selling.world_products_selling.cache.ExpiringCache;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCacheTest {
+    private final ProductVersions versions = new ProductVersions();
+    private final ProductCache cache = new ProductCache(versions, Duration.ofMinutes(1), 10, 10);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void getOne_ShouldReloadOnlyAfterRowChanged() {
+        Product product = product(1, 100.0);
+
+        cache.getOne(1, () -> load(product));
+        Product cached = cache.getOne(1, () -> load(product)).orElseThrow();
+        cached.setTotalProfit(0.0);
+        cache.getOne(2, Optional::empty);
+
+        assertEquals(1, loads.get());
+        assertEquals(100.0, cache.getOne(1, () -> load(product)).orElseThrow().getTotalProfit());
+
+        versions.onProductChanged(new ProductChangedEvent(product, product(1, 200.0)));
+        assertEquals(200.0, cache.getOne(1, () -> load(product(1, 200.0))).orElseThrow().getTotalProfit());
+        assertEquals(2, loads.get());
+        assertEquals(new ExpiringCache.Stats(2, 3, 0, 2), cache.stats().get("rows"));
+    }
+
+    @Test
+    void getList_ShouldReloadAfterAnyChangeAndDropOlderPages() {
+        cache.getList(0, 5, () -> List.of(product(1, 1.0)));
+        assertEquals(1, cache.getList(0, 5, List::of).size());
+
+        versions.onProductChanged(new ProductChangedEvent(null, product(2, 2.0)));
+
+        assertTrue(cache.getList(0, 5, List::of).isEmpty());
+        assertEquals(1, cache.stats().get("queries").size());
+    }
+
+    @Test
+    void getList_WhenUnbounded_ShouldNotCache() {
+        cache.getList(0, null, () -> List.of(product(1, 1.0)));
+
+        assertTrue(cache.getList(0, null, List::of).isEmpty());
+        assertEquals(0, cache.stats().get("queries").size());
+    }
+
+    private Optional<Product> load(Product product) {
+        loads.incrementAndGet();
+        return Optional.of(product);
+    }
+
+    private static Product product(Integer id, Double totalProfit) {
+        Product product = new Product();
+        product.setId(id);
+        product.setTotalProfit(totalProfit);
+        return product;
+    }
+}
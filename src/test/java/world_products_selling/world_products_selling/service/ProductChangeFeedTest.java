@@ -0,0 +1,95 @@
+package world_products_selling.world_products_selling.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import world_products_selling.world_products_selling.entity.Product;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductChangeFeedTest {
+
+    @Test
+    void read_WhenSubscriberLapped_ShouldReturnNull() {
+        // Arrange
+        ProductChangeFeed feed = new ProductChangeFeed(3, Duration.ofSeconds(15));
+        Product product = product(7);
+        feed.onProductChanged(new ProductChangedEvent(null, product));
+        for (int i = 0; i < 3; i++) {
+            feed.onProductChanged(new ProductChangedEvent(product, product));
+        }
+        feed.onProductChanged(new ProductChangedEvent(product, null));
+
+        // Act
+        List<ProductChangeFeed.Change> changes = feed.read(3, 10);
+
+        // Assert
+        assertNull(feed.read(2, 10));
+        assertEquals(List.of(3L, 4L, 5L), changes.stream().map(ProductChangeFeed.Change::sequence).toList());
+        assertEquals(List.of("update", "update", "delete"), changes.stream().map(ProductChangeFeed.Change::type).toList());
+        assertNull(changes.get(2).product());
+        assertEquals(7, changes.get(2).id());
+    }
+
+    @Test
+    void startAfter_ShouldResumeOnlyFromOwnRetainedEventIds() {
+        // Arrange
+        ProductChangeFeed feed = new ProductChangeFeed(2, Duration.ofSeconds(15));
+        for (int i = 1; i <= 4; i++) {
+            feed.onProductChanged(new ProductChangedEvent(null, product(i)));
+        }
+
+        // Act & Assert
+        assertEquals(5, feed.startAfter(null));
+        assertEquals(4, feed.startAfter(feed.eventId(3)));
+        assertEquals(3, feed.startAfter(feed.eventId(2)));
+        assertEquals(0, feed.startAfter(feed.eventId(1)));
+        assertEquals(0, feed.startAfter(feed.eventId(9)));
+        assertEquals(0, feed.startAfter("0123abcd-3"));
+    }
+
+    @Test
+    void subscribe_ShouldSendChangesAfterLastEventIdThenNewOnes() throws Exception {
+        // Arrange
+        ProductChangeFeed feed = new ProductChangeFeed(100, Duration.ofSeconds(15));
+        for (int i = 1; i <= 3; i++) {
+            feed.onProductChanged(new ProductChangedEvent(null, product(i)));
+        }
+        BlockingQueue<ProductChangeFeed.Change> sent = new LinkedBlockingQueue<>();
+        SseEmitter emitter = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                    if (data.getData() instanceof ProductChangeFeed.Change change) {
+                        sent.add(change);
+                    }
+                }
+            }
+        };
+
+        // Act
+        feed.subscribe(emitter, feed.eventId(1));
+        feed.onProductChanged(new ProductChangedEvent(product(2), null));
+
+        // Assert
+        assertEquals(2, sent.poll(5, TimeUnit.SECONDS).sequence());
+        assertEquals(3, sent.poll(5, TimeUnit.SECONDS).sequence());
+        ProductChangeFeed.Change deleted = sent.poll(5, TimeUnit.SECONDS);
+        assertEquals(4, deleted.sequence());
+        assertEquals("delete", deleted.type());
+        emitter.complete();
+    }
+
+    private static Product product(int id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setCountry("Iceland");
+        return product;
+    }
+}
@@ -5,18 +5,37 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.web.server.ResponseStatusException;
+import world_products_selling.world_products_selling.analytics.Bucket;
+import world_products_selling.world_products_selling.analytics.Dimension;
+import world_products_selling.world_products_selling.analytics.Metric;
+import world_products_selling.world_products_selling.analytics.ProductCube;
+import world_products_selling.world_products_selling.analytics.ProductTimeSeries;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitAverage;
+import world_products_selling.world_products_selling.analytics.ProfitPerUnitQuantiles;
+import world_products_selling.world_products_selling.dto.ProductFilter;
+import world_products_selling.world_products_selling.dto.ProductPage;
 import world_products_selling.world_products_selling.entity.Product;
 import world_products_selling.world_products_selling.repository.ProductRepository;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,6 +44,25 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ProfitPerUnitAverage profitPerUnitAverage;
+
+    @Mock
+    private ProfitPerUnitQuantiles profitPerUnitQuantiles;
+
+    @Mock
+    private ProductCube productCube;
+
+    @Mock
+    private ProductTimeSeries productTimeSeries;
+
+    // Выключенный кэш: все чтения идут в хранилище
+    @Spy
+    private ProductCache productCache = new ProductCache(new ProductVersions(), Duration.ofMinutes(1), 0, 0);
+
     @InjectMocks
     private ProductService productService;
 
@@ -63,10 +101,157 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findAll();
     }
 
+    @Test
+    void getPage_WhenMoreRowsExist_ShouldReturnNextCursor() {
+        // Arrange
+        Product product2 = new Product();
+        product2.setId(2);
+        Product product3 = new Product();
+        product3.setId(3);
+
+        when(productRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(3)))
+                .thenReturn(Arrays.asList(testProduct, product2, product3));
+
+        // Act
+        ProductPage page = productService.getPage(null, 2);
+
+        // Assert
+        assertEquals(2, page.items().size());
+        assertEquals(2, page.items().get(1).getId());
+        assertEquals(2, ProductService.decodeCursor(page.next()));
+    }
+
+    @Test
+    void getPage_WhenLastPage_ShouldReturnNullCursor() {
+        // Arrange
+        when(productRepository.findByIdGreaterThanOrderByIdAsc(1, Limit.of(3)))
+                .thenReturn(List.of(testProduct));
+
+        // Act
+        ProductPage page = productService.getPage(ProductService.encodeCursor(1), 2);
+
+        // Assert
+        assertEquals(1, page.items().size());
+        assertNull(page.next());
+    }
+
+    @Test
+    void getPage_WhenCursorIsMalformed_ShouldThrowBadRequest() {
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.getPage("???", 10)
+        );
+
+        assertTrue(exception.getMessage().contains("Некорректный курсор"));
+        verify(productRepository, never()).findByIdGreaterThanOrderByIdAsc(anyInt(), any());
+    }
+
+    @Test
+    void getPage_WhenSizeIsTooLarge_ShouldThrowBadRequest() {
+        // Act & Assert
+        assertThrows(
+                ResponseStatusException.class,
+                () -> productService.getPage(null, ProductService.MAX_PAGE_SIZE + 1)
+        );
+    }
+
+    @Test
+    void search_ShouldCheckMostSelectiveCriterionFirst() {
+        // Arrange
+        ProductFilter filter = new ProductFilter("Europe", "Germany", null, "Online", null,
+                LocalDate.of(2014, 1, 1), null, null);
+        when(productCube.count()).thenReturn(1000L);
+        when(productCube.count(Dimension.REGION, "Europe")).thenReturn(250L);
+        when(productCube.count(Dimension.COUNTRY, "Germany")).thenReturn(10L);
+        when(productCube.count(Dimension.SALES_CHANNEL, "Online")).thenReturn(500L);
+        when(productRepository.search(any(), any(), anyInt(), any())).thenReturn(List.of(testProduct));
+
+        // Act
+        ProductPage page = productService.search(filter, null, 10);
+
+        // Assert
+        assertEquals(1, page.items().size());
+        assertNull(page.next());
+        verify(productRepository).search(filter, List.of(
+                ProductFilter.Criterion.COUNTRY,
+                ProductFilter.Criterion.REGION,
+                ProductFilter.Criterion.FROM,
+                ProductFilter.Criterion.SALES_CHANNEL), 0, Limit.of(11));
+    }
+
+    @Test
+    void export_ShouldStreamMatchingRowsInSelectivityOrder() {
+        // Arrange
+        ProductFilter filter = new ProductFilter("Europe", "Germany", null, null, null, null, null, null);
+        when(productCube.count()).thenReturn(1000L);
+        when(productCube.count(Dimension.REGION, "Europe")).thenReturn(250L);
+        when(productCube.count(Dimension.COUNTRY, "Germany")).thenReturn(10L);
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(2);
+            consumer.accept(testProduct);
+            return null;
+        }).when(productRepository).stream(any(), any(), any());
+        List<Product> exported = new ArrayList<>();
+
+        // Act
+        productService.export(filter, exported::add);
+
+        // Assert
+        assertEquals(List.of(testProduct), exported);
+        verify(productRepository).stream(eq(filter), eq(List.of(
+                ProductFilter.Criterion.COUNTRY,
+                ProductFilter.Criterion.REGION)), any());
+    }
+
+    @Test
+    void getProfitPerUnitPercentiles_ShouldDefaultToP50P95P99AndRejectOutOfRange() {
+        // Arrange
+        when(profitPerUnitQuantiles.percentiles(any())).thenReturn(Map.of("count", 0L));
+
+        // Act
+        productService.getProfitPerUnitPercentiles(null);
+
+        // Assert
+        verify(profitPerUnitQuantiles).percentiles(List.of(50.0, 95.0, 99.0));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> productService.getProfitPerUnitPercentiles(List.of(50.0, 101.0)));
+        assertEquals(400, exception.getStatusCode().value());
+    }
+
+    @Test
+    void getTop_ShouldRankByFieldSumAndValidateK() {
+        // Arrange
+        when(productCube.top(any(), any(), anyInt())).thenReturn(List.of());
+
+        // Act
+        productService.getTop("itemType", "unitsSold", null);
+
+        // Assert
+        verify(productCube).top(Dimension.ITEM_TYPE, Metric.parse("sum(unitsSold)"), 10);
+        assertThrows(ResponseStatusException.class, () -> productService.getTop("itemType", "unitsSold", 0));
+        assertThrows(ResponseStatusException.class, () -> productService.getTop("itemType", "price", 5));
+    }
+
+    @Test
+    void search_WhenFromIsAfterTo_ShouldThrowBadRequest() {
+        // Arrange
+        ProductFilter filter = new ProductFilter(null, null, null, null, null,
+                LocalDate.of(2015, 1, 1), LocalDate.of(2014, 1, 1), null);
+
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.search(filter, null, 10)
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        verify(productRepository, never()).search(any(), any(), anyInt(), any());
+    }
+
     @Test
     void getOne_WhenProductExists_ShouldReturnProduct() {
         // Arrange
-        when(productRepository.existsById(1)).thenReturn(true);
         when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
 
         // Act
@@ -76,14 +261,14 @@ class ProductServiceTest {
         assertNotNull(result);
         assertEquals(1, result.getId());
         assertEquals("Germany", result.getCountry());
-        verify(productRepository, times(1)).existsById(1);
         verify(productRepository, times(1)).findById(1);
+        verify(productRepository, never()).existsById(any());
     }
 
     @Test
     void getOne_WhenProductDoesNotExist_ShouldThrowNotFoundException() {
         // Arrange
-        when(productRepository.existsById(999)).thenReturn(false);
+        when(productRepository.findById(999)).thenReturn(Optional.empty());
 
         // Act & Assert
         ResponseStatusException exception = assertThrows(
@@ -92,8 +277,7 @@ class ProductServiceTest {
         );
 
         assertTrue(exception.getMessage().contains("Запись не существует"));
-        verify(productRepository, times(1)).existsById(999);
-        verify(productRepository, never()).findById(any());
+        verify(productRepository, times(1)).findById(999);
     }
 
     @Test
@@ -151,11 +335,60 @@ class ProductServiceTest {
     }
 
     @Test
-    void update_WhenProductExists_ShouldUpdateProduct() {
+    void addAll_ShouldSaveAllProductsWithGeneratedIds() {
         // Arrange
+        Product product2 = new Product();
+        product2.setRegion("Asia");
+        List<Product> products = Arrays.asList(testProduct, product2);
+
+        when(productRepository.findAllById(List.of(1))).thenReturn(List.of());
+        when(productRepository.saveAll(products)).thenReturn(products);
+
+        // Act
+        List<Product> result = productService.addAll(products);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertNull(testProduct.getId());
+        verify(productRepository, times(1)).saveAll(products);
+    }
+
+    @Test
+    void addAll_WhenProductAlreadyExists_ShouldThrowConflictException() {
+        // Arrange
+        when(productRepository.findAllById(List.of(1))).thenReturn(List.of(testProduct));
+
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.addAll(List.of(testProduct))
+        );
+
+        assertTrue(exception.getMessage().contains("Запись создана ранее"));
+        verify(productRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void addAll_WhenBatchIsTooLarge_ShouldThrowBadRequest() {
+        // Arrange
+        List<Product> products = Collections.nCopies(ProductService.MAX_BATCH_SIZE + 1, new Product());
+
+        // Act & Assert
+        assertThrows(
+                ResponseStatusException.class,
+                () -> productService.addAll(products)
+        );
+        verify(productRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void update_WhenProductExists_ShouldUpdateProductAndPublishChange() {
+        // Arrange
+        Product stored = new Product();
+        stored.setId(1);
+        stored.setTotalProfit(5000.0);
         testProduct.setTotalProfit(6000.0);
-        when(productRepository.existsById(1)).thenReturn(true);
-        when(productRepository.save(testProduct)).thenReturn(testProduct);
+        when(productRepository.update(testProduct)).thenReturn(Optional.of(stored));
 
         // Act
         Product result = productService.update(testProduct);
@@ -163,14 +396,17 @@ class ProductServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(6000.0, result.getTotalProfit());
-        verify(productRepository, times(1)).existsById(1);
-        verify(productRepository, times(1)).save(testProduct);
+        verify(productRepository, times(1)).update(testProduct);
+        verify(productRepository, never()).findById(any());
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ProductChangedEvent changed
+                && changed.before().getTotalProfit() == 5000.0 && changed.after() == testProduct));
     }
 
     @Test
     void update_WhenProductDoesNotExist_ShouldThrowNotFoundException() {
         // Arrange
         testProduct.setId(999);
+        when(productRepository.update(testProduct)).thenReturn(Optional.empty());
         when(productRepository.existsById(999)).thenReturn(false);
 
         // Act & Assert
@@ -180,64 +416,157 @@ class ProductServiceTest {
         );
 
         assertTrue(exception.getMessage().contains("Запись не существует"));
-        verify(productRepository, times(1)).existsById(999);
-        verify(productRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
-    void delete_WhenProductExists_ShouldDeleteProduct() {
+    void update_WhenVersionIsStale_ShouldThrowConflict() {
         // Arrange
+        testProduct.setVersion(3);
+        when(productRepository.update(testProduct)).thenReturn(Optional.empty());
         when(productRepository.existsById(1)).thenReturn(true);
-        doNothing().when(productRepository).deleteById(1);
+
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.update(testProduct)
+        );
+
+        assertEquals(409, exception.getStatusCode().value());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void patch_ShouldApplyChangesToCurrentVersion() {
+        // Arrange
+        testProduct.setVersion(4);
+        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(productRepository.update(any())).thenReturn(Optional.of(testProduct));
 
         // Act
-        productService.delete(1);
+        Product result = productService.patch(1, product -> {
+            product.setId(7);
+            product.setTotalProfit(1.5);
+        });
 
         // Assert
-        verify(productRepository, times(1)).existsById(1);
-        verify(productRepository, times(1)).deleteById(1);
+        assertEquals(1, result.getId());
+        assertEquals(1.5, result.getTotalProfit());
+        assertEquals("Germany", result.getCountry());
+        verify(productRepository).update(argThat(product -> product.getVersion() == 4));
+    }
+
+    @Test
+    void delete_WhenProductExists_ShouldDeleteProductAndPublishChange() {
+        // Arrange
+        when(productRepository.delete(1, null)).thenReturn(Optional.of(testProduct));
+
+        // Act
+        productService.delete(1, null);
+
+        // Assert
+        verify(productRepository, times(1)).delete(1, null);
+        verify(productRepository, never()).findById(any());
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ProductChangedEvent changed
+                && changed.before().getId() == 1 && changed.after() == null));
     }
 
     @Test
     void delete_WhenProductDoesNotExist_ShouldThrowNotFoundException() {
         // Arrange
+        when(productRepository.delete(999, 2)).thenReturn(Optional.empty());
         when(productRepository.existsById(999)).thenReturn(false);
 
         // Act & Assert
         ResponseStatusException exception = assertThrows(
                 ResponseStatusException.class,
-                () -> productService.delete(999)
+                () -> productService.delete(999, 2)
         );
 
         assertTrue(exception.getMessage().contains("Запись не существует"));
-        verify(productRepository, times(1)).existsById(999);
-        verify(productRepository, never()).deleteById(any());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
-    void findAverageProfitPerUnit_ShouldReturnAverageProfit() {
+    void findAverageProfitPerUnit_ShouldReturnMaintainedAverage() {
         // Arrange
         double expectedAverage = 50.5;
-        when(productRepository.findAverageProfitPerUnit()).thenReturn(expectedAverage);
+        when(profitPerUnitAverage.average()).thenReturn(expectedAverage);
 
         // Act
         double result = productService.findAverageProfitPerUnit();
 
         // Assert
         assertEquals(expectedAverage, result);
-        verify(productRepository, times(1)).findAverageProfitPerUnit();
+        verify(profitPerUnitAverage, times(1)).average();
+        verify(productRepository, never()).findAverageProfitPerUnit();
     }
 
     @Test
     void findAverageProfitPerUnit_WhenNoData_ShouldReturnZero() {
         // Arrange
-        when(productRepository.findAverageProfitPerUnit()).thenReturn(0.0);
+        when(profitPerUnitAverage.average()).thenReturn(0.0);
 
         // Act
         double result = productService.findAverageProfitPerUnit();
 
         // Assert
         assertEquals(0.0, result);
-        verify(productRepository, times(1)).findAverageProfitPerUnit();
+        verify(profitPerUnitAverage, times(1)).average();
+    }
+
+    @Test
+    void getStats_ShouldParseGroupByAndMetrics() {
+        // Arrange
+        List<Map<String, Object>> rows = List.of(Map.of("region", "Europe", "count", 2L));
+        when(productCube.query(any(), any())).thenReturn(rows);
+
+        // Act
+        List<Map<String, Object>> result = productService.getStats(
+                List.of("region", "itemType", "region"), List.of("sum(totalProfit)", "count"));
+
+        // Assert
+        assertEquals(rows, result);
+        verify(productCube).query(
+                List.of(Dimension.REGION, Dimension.ITEM_TYPE),
+                List.of(new Metric(Metric.Function.SUM, Metric.Measure.TOTAL_PROFIT), Metric.COUNT));
+    }
+
+    @Test
+    void getStats_WhenMetricIsUnknown_ShouldThrowBadRequest() {
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.getStats(List.of("region"), List.of("max(totalProfit)"))
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        verifyNoInteractions(productCube);
+    }
+
+    @Test
+    void getTimeSeries_ShouldUseDefaultMetrics() {
+        // Arrange
+        LocalDate from = LocalDate.of(2014, 1, 1);
+        LocalDate to = LocalDate.of(2014, 12, 31);
+
+        // Act
+        productService.getTimeSeries("quarter", from, to, "region", null);
+
+        // Assert
+        verify(productTimeSeries).query(Bucket.QUARTER, from, to, Dimension.REGION, List.of(
+                Metric.COUNT, Metric.parse("sum(unitsSold)"), Metric.parse("sum(totalProfit)")));
+    }
+
+    @Test
+    void getTimeSeries_WhenBucketIsUnknown_ShouldThrowBadRequest() {
+        // Act & Assert
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> productService.getTimeSeries("week", null, null, null, null)
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        verifyNoInteractions(productTimeSeries);
     }
-}
\ No newline at end of file
+}